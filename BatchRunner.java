@@ -0,0 +1,337 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many independent games (one Minesweeper + MoveStrategy pair each) inside a single JVM on a
+ * work-stealing pool, and aggregates the results. Every worker thread keeps its own latency
+ * histograms of game and move times, merged for the summary, and can stream a record per game
+ * to a ResultWriter.
+ *
+ * In tournament mode (several strategies) every game is played once per strategy, each on a
+ * fresh copy of the same board with the same solver seed, and the results are kept and
+ * summarized per strategy, ending with a side by side comparison.
+ */
+class BatchRunner {
+    // Games handled by a single task before it stops splitting.
+    private static final int GAMES_PER_TASK = 64;
+
+    private final int rows;
+    private final int cols;
+    private final int numberOfMines;
+    private final int numGames;
+    private final int numThreads;
+    private final long batchSeed;
+    private final MoveStrategy[] strategies;
+    private final BoardCorpus corpus; // Boards to play, or null to generate them from the seed.
+    private boolean firstClickSafe;
+    private ResultWriter resultWriter; // May be null.
+
+    // Aggregate results of each strategy, updated concurrently by the workers.
+    private final Standing[] standings;
+
+    // Per-thread state, and every one handed out (for the summary).
+    private final ThreadLocal<Worker> worker = ThreadLocal.withInitial(this::newWorker);
+    private final List<Worker> workers = new CopyOnWriteArrayList<Worker>();
+
+    /**
+     * Plays 'numGames' games with each of 'strategies' (a tournament if there are several).
+     */
+    BatchRunner(int rows, int cols, int numberOfMines, int numGames, int numThreads,
+            long batchSeed, MoveStrategy... strategies) {
+        this(rows, cols, numberOfMines, numGames, numThreads, batchSeed, null, strategies);
+    }
+
+    /**
+     * Plays every board of 'corpus' once per strategy. The solver seeds still derive from
+     * 'batchSeed'.
+     */
+    BatchRunner(BoardCorpus corpus, int numThreads, long batchSeed, MoveStrategy... strategies) {
+        this(corpus.getRows(), corpus.getCols(), corpus.getNumberOfMines(), corpus.size(),
+                numThreads, batchSeed, corpus, strategies);
+    }
+
+    private BatchRunner(int rows, int cols, int numberOfMines, int numGames, int numThreads,
+            long batchSeed, BoardCorpus corpus, MoveStrategy[] strategies) {
+        if (strategies.length == 0) {
+            throw new IllegalArgumentException("No strategy to play");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.numberOfMines = numberOfMines;
+        this.numGames = numGames;
+        this.numThreads = numThreads;
+        this.batchSeed = batchSeed;
+        this.corpus = corpus;
+        this.strategies = strategies;
+        standings = new Standing[strategies.length];
+        for (int i = 0; i < strategies.length; i ++) {
+            standings[i] = new Standing();
+        }
+    }
+
+    /**
+     * Makes the first move of every game safe, see Minesweeper.setFirstClickSafe.
+     */
+    void setFirstClickSafe(boolean firstClickSafe) {
+        this.firstClickSafe = firstClickSafe;
+    }
+
+    /**
+     * Streams the record of every game to 'resultWriter'. The caller closes it after run().
+     */
+    void setResultWriter(ResultWriter resultWriter) {
+        this.resultWriter = resultWriter;
+    }
+
+    /**
+     * Plays all the games and prints a summary.
+     */
+    void run() {
+        System.out.println((isTournament() ? "Tournament" : "Batch") + ": games = " + numGames +
+                ", threads = " + numThreads + ", grid size = " + rows + " x " + cols +
+                ", number of mines = " + numberOfMines + ", seed = " + batchSeed +
+                (isTournament() ? ", strategies = " + strategies.length :
+                        ", solver = " + strategies[0].describe()) +
+                (corpus != null ? ", boards from corpus" : "") +
+                (firstClickSafe ? ", first click safe" : ""));
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        long startTime = System.nanoTime();
+        try {
+            pool.invoke(new GameRange(0, numGames));
+        } catch (UncheckedIOException e) {
+            System.out.println("Error writing results: " + e.getCause().getMessage());
+            return;
+        } finally {
+            pool.shutdown();
+        }
+        long wallNanos = System.nanoTime() - startTime;
+        if (!isTournament()) {
+            printSummary(0, wallNanos);
+        } else {
+            for (int s = 0; s < strategies.length; s ++) {
+                System.out.println();
+                System.out.println("Strategy " + (s + 1) + ": " + strategies[s].describe());
+                printSummary(s, wallNanos);
+            }
+            printComparison(wallNanos);
+        }
+        if (PatternCache.totalLookups() > 0) System.out.println(PatternCache.summary());
+    }
+
+    boolean isTournament() {
+        return strategies.length > 1;
+    }
+
+    /**
+     * Plays game number 'gameId' with every strategy. The board and the solver get their own
+     * seeds derived from the batch seed, so every game is independent of which worker happens to
+     * run it, is the same for all the strategies, and can be replayed on its own with --seed and
+     * --game.
+     */
+    private void playGame(int gameId) {
+        for (int s = 0; s < strategies.length; s ++) {
+            playGame(gameId, s);
+        }
+    }
+
+    private void playGame(int gameId, int s) {
+        Worker state = worker.get();
+        Standing standing = standings[s];
+        GameStats stats = state.stats[s];
+        long solverSeed = MinesUtil.solverSeed(batchSeed, gameId);
+        Minesweeper board;
+        if (corpus != null) {
+            board = corpus.newBoard(gameId);
+        } else {
+            board = new Minesweeper(rows, cols, numberOfMines,
+                    MinesUtil.boardSeed(batchSeed, gameId));
+        }
+        board.setFirstClickSafe(firstClickSafe);
+        long prevTime = System.nanoTime();
+        strategies[s].solve(board, solverSeed, null, false, stats);
+        long elapsed = System.nanoTime() - prevTime;
+        boolean won = board.hasUserWon();
+        if (won) {
+            standing.wins.increment();
+            standing.wonNanos.add(elapsed);
+        } else {
+            standing.lostNanos.add(elapsed);
+        }
+        state.gameNanos[s].record(elapsed);
+        standing.gamesPlayed.increment();
+        standing.movesMade.add(stats.getMoves());
+        standing.guessesMade.add(stats.getGuesses());
+        if (resultWriter != null) {
+            state.line.setLength(0);
+            resultWriter.format(state.line, gameId, board.getSeed(), rows, cols, numberOfMines,
+                    won, stats.getMoves(), stats.getGuesses(), elapsed, s + 1);
+            try {
+                resultWriter.write(state.line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private Worker newWorker() {
+        Worker state = new Worker(strategies.length);
+        workers.add(state);
+        return state;
+    }
+
+    /**
+     * Prints the summary of the games of strategy 's'.
+     */
+    private void printSummary(int s, long wallNanos) {
+        Standing standing = standings[s];
+        long played = standing.gamesPlayed.sum();
+        long won = standing.wins.sum();
+        long lost = played - won;
+        System.out.println("-------------------------------------------------");
+        System.out.println("Wins = " + won + " out of " + played + ", win percentage = " +
+                String.format("%.2f", percent(won, played)));
+        System.out.println("-------------------------------------------------");
+        System.out.println("Average time in milliseconds when winning: " +
+                String.format("%.5f", averageMillis(standing.wonNanos.sum(), won)));
+        System.out.println("Average time in milliseconds when losing: " +
+                String.format("%.5f", averageMillis(standing.lostNanos.sum(), lost)));
+        LatencyHistogram gameNanos = gameNanos(s);
+        LatencyHistogram moveNanos = new LatencyHistogram();
+        for (Worker state : workers) {
+            moveNanos.add(state.moveNanos[s]);
+        }
+        if (played > 0) {
+            System.out.println("Min / max time in milliseconds: " + String.format("%.5f / %.5f",
+                    gameNanos.getMin() / 1e6, gameNanos.getMax() / 1e6));
+            System.out.println("Game time in milliseconds p50 / p99 / p999: " +
+                    percentiles(gameNanos, 1e6));
+            System.out.println("Moves = " + standing.movesMade.sum() + ", guesses = " +
+                    standing.guessesMade.sum() +
+                    ", move time in microseconds p50 / p99 / p999: " + percentiles(moveNanos, 1e3));
+        }
+        if (isTournament()) return; // The wall time is shared, see printComparison.
+        System.out.println("Wall time in milliseconds: " + String.format("%.1f", wallNanos / 1e6) +
+                ", games per second: " +
+                String.format("%.1f", played * 1e9 / Math.max(wallNanos, 1)));
+    }
+
+    /**
+     * Prints one line per strategy with its win rate and costs, for picking the best trade-off.
+     * Mean game time and CPU share are taken from the game times, since the strategies share
+     * the pool and the wall time.
+     */
+    private void printComparison(long wallNanos) {
+        long totalNanos = 0;
+        for (Standing standing : standings) {
+            totalNanos += standing.wonNanos.sum() + standing.lostNanos.sum();
+        }
+        System.out.println();
+        System.out.println("=================================================");
+        System.out.println(String.format("%-3s %8s %12s %12s %12s %9s %8s  %s", "#", "win %",
+                "mean ms", "p50 ms", "p99 ms", "guess/g", "time %", "strategy"));
+        for (int s = 0; s < strategies.length; s ++) {
+            Standing standing = standings[s];
+            long played = standing.gamesPlayed.sum();
+            long nanos = standing.wonNanos.sum() + standing.lostNanos.sum();
+            LatencyHistogram gameNanos = gameNanos(s);
+            System.out.println(String.format("%-3d %8.2f %12.4f %12.4f %12.4f %9.3f %8.1f  %s",
+                    s + 1, percent(standing.wins.sum(), played), averageMillis(nanos, played),
+                    gameNanos.getValueAtPercentile(50.0) / 1e6,
+                    gameNanos.getValueAtPercentile(99.0) / 1e6,
+                    played == 0 ? 0.0 : (double) standing.guessesMade.sum() / played,
+                    percent(nanos, totalNanos), strategies[s].describe()));
+        }
+        System.out.println("=================================================");
+        System.out.println("Wall time in milliseconds: " + String.format("%.1f", wallNanos / 1e6) +
+                ", games per second: " + String.format("%.1f",
+                numGames * strategies.length * 1e9 / Math.max(wallNanos, 1)));
+    }
+
+    private LatencyHistogram gameNanos(int s) {
+        LatencyHistogram gameNanos = new LatencyHistogram();
+        for (Worker state : workers) {
+            gameNanos.add(state.gameNanos[s]);
+        }
+        return gameNanos;
+    }
+
+    private static String percentiles(LatencyHistogram histogram, double unitNanos) {
+        return String.format("%.3f / %.3f / %.3f", histogram.getValueAtPercentile(50.0) / unitNanos,
+                histogram.getValueAtPercentile(99.0) / unitNanos,
+                histogram.getValueAtPercentile(99.9) / unitNanos);
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0.0 : 100.0 * part / total;
+    }
+
+    private static double averageMillis(long nanos, long count) {
+        return count == 0 ? 0.0 : nanos / 1e6 / count;
+    }
+
+    /**
+     * The aggregate results of one strategy.
+     */
+    private static class Standing {
+        final LongAdder wins = new LongAdder();
+        final LongAdder wonNanos = new LongAdder();
+        final LongAdder lostNanos = new LongAdder();
+        final LongAdder gamesPlayed = new LongAdder();
+        final LongAdder movesMade = new LongAdder();
+        final LongAdder guessesMade = new LongAdder();
+    }
+
+    /**
+     * What a worker thread reuses from game to game, per strategy.
+     */
+    private static class Worker {
+        final LatencyHistogram[] gameNanos;
+        final LatencyHistogram[] moveNanos;
+        final GameStats[] stats;
+        final StringBuilder line = new StringBuilder(160);
+
+        Worker(int numStrategies) {
+            gameNanos = new LatencyHistogram[numStrategies];
+            moveNanos = new LatencyHistogram[numStrategies];
+            stats = new GameStats[numStrategies];
+            for (int s = 0; s < numStrategies; s ++) {
+                gameNanos[s] = new LatencyHistogram();
+                moveNanos[s] = new LatencyHistogram();
+                stats[s] = new GameStats(moveNanos[s]);
+            }
+        }
+    }
+
+    /**
+     * A contiguous range of game ids [from, to), split in halves until it is small enough to play
+     * directly. Idle workers steal the unsplit halves.
+     */
+    private class GameRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        GameRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                for (int gameId = from; gameId < to; gameId ++) {
+                    playGame(gameId);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new GameRange(from, mid), new GameRange(mid, to));
+        }
+    }
+}
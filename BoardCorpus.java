@@ -0,0 +1,130 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A fixed set of boards that solvers can be replayed against, so that win rate and performance
+ * comparisons between solver versions see exactly the same games. Boards are kept as mine bitsets,
+ * both in memory and on disk.
+ *
+ * File format (big endian):
+ *   int magic ("MSCP"), int version, int rows, int cols, int numberOfMines, int numBoards,
+ *   then per board: long seed, long[(rows * cols + 63) / 64] mine bitset.
+ * Version 1 files, of square boards, have a single int gridSize instead of rows and cols.
+ */
+class BoardCorpus {
+    private static final int MAGIC = 0x4D534350; // "MSCP"
+    private static final int VERSION = 2;
+    private static final int SQUARE_VERSION = 1;
+
+    private final int rows;
+    private final int cols;
+    private final int numberOfMines;
+    private final long[] seeds;
+    private final long[][] mineBits;
+
+    private BoardCorpus(int rows, int cols, int numberOfMines, long[] seeds, long[][] mineBits) {
+        this.rows = rows;
+        this.cols = cols;
+        this.numberOfMines = numberOfMines;
+        this.seeds = seeds;
+        this.mineBits = mineBits;
+    }
+
+    /**
+     * Generates the boards of games [0, numBoards) of the batch seeded by 'batchSeed': the same
+     * boards a BatchRunner with that seed plays.
+     */
+    static BoardCorpus generate(int rows, int cols, int numberOfMines, int numBoards,
+            long batchSeed) {
+        long[] seeds = new long[numBoards];
+        long[][] mineBits = new long[numBoards][];
+        for (int i = 0; i < numBoards; i ++) {
+            seeds[i] = MinesUtil.boardSeed(batchSeed, i);
+            mineBits[i] = new Minesweeper(rows, cols, numberOfMines, seeds[i]).getMineBitset();
+        }
+        return new BoardCorpus(rows, cols, numberOfMines, seeds, mineBits);
+    }
+
+    static BoardCorpus load(String fileName) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(fileName)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a board corpus: " + fileName);
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != SQUARE_VERSION) {
+                throw new IOException("Unsupported board corpus version: " + version);
+            }
+            int rows = in.readInt();
+            int cols = version == SQUARE_VERSION ? rows : in.readInt();
+            if (!Minesweeper.isValidShape(rows, cols)) {
+                throw new IOException("Invalid board size in corpus: " + rows + " x " + cols);
+            }
+            int numberOfMines = in.readInt();
+            int numBoards = in.readInt();
+            if (numBoards < 0) {
+                throw new IOException("Invalid number of boards in corpus: " + numBoards);
+            }
+            int numWords = (rows * cols + 63) / 64;
+            long[] seeds = new long[numBoards];
+            long[][] mineBits = new long[numBoards][numWords];
+            for (int i = 0; i < numBoards; i ++) {
+                seeds[i] = in.readLong();
+                for (int word = 0; word < numWords; word ++) {
+                    mineBits[i][word] = in.readLong();
+                }
+            }
+            return new BoardCorpus(rows, cols, numberOfMines, seeds, mineBits);
+        }
+    }
+
+    void save(String fileName) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(numberOfMines);
+            out.writeInt(seeds.length);
+            for (int i = 0; i < seeds.length; i ++) {
+                out.writeLong(seeds[i]);
+                for (long word : mineBits[i]) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return seeds.length;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getCols() {
+        return cols;
+    }
+
+    int getNumberOfMines() {
+        return numberOfMines;
+    }
+
+    long getSeed(int i) {
+        return seeds[i];
+    }
+
+    /**
+     * Returns a fresh (fully covered) board with the layout of board i.
+     */
+    Minesweeper newBoard(int i) {
+        return new Minesweeper(rows, cols, mineBits[i], seeds[i]);
+    }
+}
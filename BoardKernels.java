@@ -0,0 +1,58 @@
+/**
+ * The loops that run over whole rows and bands of cells: the neighbor counts of a new board, the
+ * snapshot copy, and Solver's count of the probability-less cells. ScalarKernels is plain Java.
+ * VectorKernels (vector/VectorKernels.java) does the same with the incubating Vector API; that
+ * module must be added to both javac and java, so it is only built and used on request:
+ *
+ *   javac --add-modules jdk.incubator.vector -cp . -d . vector/VectorKernels.java
+ *   java --add-modules jdk.incubator.vector MinesConsole ...
+ *
+ * INSTANCE is VectorKernels if it is on the class path and its module is there, else
+ * ScalarKernels. -Dmines.kernels=scalar picks ScalarKernels anyway, e.g. to compare the two.
+ */
+interface BoardKernels {
+    String KERNELS_PROPERTY = "mines.kernels";
+    String SCALAR = "scalar";
+
+    BoardKernels INSTANCE = load();
+
+    /**
+     * Stores into 'sums' the # of mines among cells (x, y-1), (x, y) and (x, y+1) of the row of
+     * 'cols' cells starting at 'rowStart', using 'mines' as scratch space.
+     */
+    void sumRowMines(byte[] grid, int rowStart, int cols, byte[] mines, byte[] sums);
+
+    /**
+     * Adds to the cells of the row starting at 'rowStart' their # of neighboring mines, from the
+     * row sums (see sumRowMines) of the rows above, of the row itself and below.
+     */
+    void addNeighborCounts(byte[] grid, int rowStart, int cols, byte[] above, byte[] current,
+            byte[] below);
+
+    /**
+     * Stores into 'snapshot' what a player sees of the cells with index in [from, to) (see
+     * Cell.snapshotValue).
+     */
+    void snapshotValues(byte[] grid, int[] snapshot, int from, int to);
+
+    /**
+     * Returns the # of cells with index in [from, to) that are covered, not marked as mines and
+     * without a probability (above 1.0).
+     */
+    int countProbless(int[] snapshot, boolean[] isMine, double[] mineProb, int from, int to);
+
+    String describe();
+
+    private static BoardKernels load() {
+        if (!SCALAR.equals(System.getProperty(KERNELS_PROPERTY))) {
+            try {
+                return (BoardKernels) Class.forName("VectorKernels").getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not built, run without --add-modules jdk.incubator.vector, or no 256 bit
+                // vectors.
+            }
+        }
+        return new ScalarKernels();
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Draws boards for Minesweeper.printGrid. Every frame is built in one reusable byte buffer and
+ * written to the stream with a single write and flush, instead of a String and a println per row.
+ *
+ * A renderer can show a window (viewport) of the board, scrolled with scrollTo. In ANSI mode the
+ * first frame clears the screen and draws the window; later frames of the same board and window
+ * only rewrite the cells that changed since the previous frame, moving the cursor to each with
+ * ANSI escapes, and then leave the cursor (after erasing) on the line below the board. So the
+ * cost of a frame grows with the changes, not with the board: watching the solver play a
+ * 500x500 board stays fast. Plain mode redraws the whole window each frame, in the classic
+ * layout, and works on any terminal or file.
+ */
+class BoardRenderer {
+    private static final String ROW_GUTTER = "    ";
+    private static final int MIN_CELL_WIDTH = 4;
+    private static final byte ESC = 0x1B;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final PrintStream out;
+    private final boolean ansi;
+    private final int maxViewRows; // 0: no limit.
+    private final int maxViewCols;
+
+    private byte[] buffer = new byte[4096];
+    private int length;
+
+    // The window, as of the last frame.
+    private Minesweeper shownBoard; // Null before the first frame.
+    private int top;
+    private int left;
+    private int viewRows;
+    private int viewCols;
+    private byte[] shown = new byte[0]; // The character on screen for each window cell.
+    private boolean redraw = true; // Whether the next frame must draw everything.
+
+    /**
+     * A plain renderer of whole boards.
+     */
+    BoardRenderer(PrintStream out) {
+        this(out, false, 0, 0);
+    }
+
+    /**
+     * A renderer of windows of up to maxViewRows x maxViewCols cells (0: unlimited).
+     */
+    BoardRenderer(PrintStream out, boolean ansi, int maxViewRows, int maxViewCols) {
+        this.out = out;
+        this.ansi = ansi;
+        this.maxViewRows = Math.max(maxViewRows, 0);
+        this.maxViewCols = Math.max(maxViewCols, 0);
+    }
+
+    /**
+     * Scrolls the window to start at row 'top' and column 'left' (clamped to the board) on the
+     * next frame.
+     */
+    void scrollTo(int top, int left) {
+        this.top = Math.max(top, 0);
+        this.left = Math.max(left, 0);
+        redraw = true;
+    }
+
+    int getTop() {
+        return top;
+    }
+
+    int getLeft() {
+        return left;
+    }
+
+    /**
+     * Draws a frame of 'board'.
+     */
+    void render(Minesweeper board) {
+        int rows = board.getRows();
+        int cols = board.getCols();
+        int newViewRows = maxViewRows > 0 ? Math.min(maxViewRows, rows) : rows;
+        int newViewCols = maxViewCols > 0 ? Math.min(maxViewCols, cols) : cols;
+        top = Math.min(top, rows - newViewRows);
+        left = Math.min(left, cols - newViewCols);
+        if (board != shownBoard || newViewRows != viewRows || newViewCols != viewCols) {
+            shownBoard = board;
+            viewRows = newViewRows;
+            viewCols = newViewCols;
+            if (shown.length < viewRows * viewCols) shown = new byte[viewRows * viewCols];
+            redraw = true;
+        }
+        int labelWidth = digits(top + viewRows - 1);
+        int cellWidth = Math.max(MIN_CELL_WIDTH, digits(left + viewCols - 1) + 1);
+        length = 0;
+        if (!ansi || redraw) {
+            drawAll(board, labelWidth, cellWidth);
+        } else {
+            drawChanges(board, labelWidth + ROW_GUTTER.length(), cellWidth);
+        }
+        redraw = !ansi;
+        out.write(buffer, 0, length);
+        out.flush();
+    }
+
+    private void drawAll(Minesweeper board, int labelWidth, int cellWidth) {
+        if (ansi) {
+            escape('H');
+            escape('J'); // Clear the screen from the top left corner.
+        }
+        appendSpaces(labelWidth + ROW_GUTTER.length()); // Space for the row numbers.
+        for (int j = left; j < left + viewCols; j ++) {
+            appendPadded(j, cellWidth);
+        }
+        newLine();
+        newLine();
+        for (int i = 0; i < viewRows; i ++) {
+            appendPadded(top + i, labelWidth);
+            appendSpaces(ROW_GUTTER.length());
+            for (int j = 0; j < viewCols; j ++) {
+                byte c = (byte) Cell.printableChar(board.getCell(top + i, left + j));
+                shown[i * viewCols + j] = c;
+                append(c);
+                appendSpaces(cellWidth - 1);
+            }
+            newLine();
+        }
+    }
+
+    /**
+     * Rewrites the cells that differ from 'shown', then puts the cursor below the board.
+     * 'gutter' is the width of the row labels.
+     */
+    private void drawChanges(Minesweeper board, int gutter, int cellWidth) {
+        int cursorRow = -1; // Screen position (0-based) right after the last written cell.
+        int cursorCol = -1;
+        for (int i = 0; i < viewRows; i ++) {
+            int screenRow = i + 2; // Below the column numbers and a blank line.
+            for (int j = 0; j < viewCols; j ++) {
+                byte c = (byte) Cell.printableChar(board.getCell(top + i, left + j));
+                if (shown[i * viewCols + j] == c) continue;
+                shown[i * viewCols + j] = c;
+                int screenCol = gutter + j * cellWidth;
+                if (screenRow != cursorRow || screenCol != cursorCol) moveTo(screenRow, screenCol);
+                append(c);
+                cursorRow = screenRow;
+                cursorCol = screenCol + 1;
+            }
+        }
+        moveTo(viewRows + 2, 0);
+        escape('J'); // Erase what was printed below the board since the last frame.
+    }
+
+    private void moveTo(int row, int col) {
+        append(ESC);
+        append((byte) '[');
+        appendNumber(row + 1);
+        append((byte) ';');
+        appendNumber(col + 1);
+        append((byte) 'H');
+    }
+
+    private void escape(char command) {
+        append(ESC);
+        append((byte) '[');
+        append((byte) command);
+    }
+
+    private void appendPadded(int value, int width) {
+        int start = length;
+        appendNumber(value);
+        appendSpaces(width - (length - start));
+    }
+
+    private void appendNumber(int value) {
+        int end = length + digits(value);
+        ensureCapacity(end);
+        for (int i = end - 1; i >= length; i --) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+    }
+
+    private void appendSpaces(int count) {
+        if (count <= 0) return;
+        ensureCapacity(length + count);
+        Arrays.fill(buffer, length, length + count, (byte) ' ');
+        length += count;
+    }
+
+    private void newLine() {
+        for (byte b : LINE_SEPARATOR) {
+            append(b);
+        }
+    }
+
+    private void append(byte b) {
+        if (length == buffer.length) ensureCapacity(length + 1);
+        buffer[length ++] = b;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, 2 * buffer.length));
+        }
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits ++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The per-cell state of IncrementalSolver in a compact encoding, kept either on the heap or
+ * off-heap in a memory-mapped file. A mapped store lives in the page cache (and on disk) instead
+ * of the Java heap, so the heap does not grow with the board. Per cell:
+ *
+ *   - a state byte: the known # of neighboring mines plus one in the low nibble (0 while
+ *     covered), and the MINE, DIRTY and SATISFIED flag bits,
+ *   - a probability byte: the probability remaining / available (see IncrementalSolver), as the
+ *     reduced fraction (remaining << 4) | available, 0 for none. Both are at most 8, so the
+ *     encoding is exact,
+ *   - the position table of the frontier buckets (ProbabilityBuckets), and the tree of the
+ *     probability-less cell set (RankedIntSet).
+ *
+ * That is 2 bytes per cell plus 4 per table, against about 24 for plain arrays of booleans,
+ * bytes and doubles. All zeroes is a fully covered board, so a fresh file needs no init pass.
+ * The frontier buckets themselves stay on the heap; they only hold the frontier.
+ *
+ * File layout: a HEADER_SIZE byte header (int magic "MSST", int version, int rows, int cols, int
+ * clean), the state bytes, the probability bytes, then (8 byte aligned, native byte order) the
+ * frontier positions and the probability-less tree, one int per cell each. 'clean' is 1 while the
+ * solver is stopped between moves, so that a game paused with the file can be resumed from it
+ * (see open()); a solver that died mid-move leaves 0.
+ */
+class CellStateStore implements AutoCloseable {
+    static final int COVERED = -1;
+
+    private static final int MAGIC = 0x4D535354; // "MSST"
+    private static final int VERSION = 5;
+    private static final int CLEAN_OFFSET = 16;
+    private static final int NUM_TABLES = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int KNOWN_MASK = 0x0F;
+    private static final int MINE = 0x10;
+    private static final int DIRTY = 0x20;
+    private static final int SATISFIED = 0x40;
+    private static final double[] PROB_OF_CODE = new double[256];
+    // The code of remaining / available, indexed by (remaining << 4) | available: the fraction
+    // reduced, so that equal probabilities get equal codes.
+    private static final byte[] REDUCED_CODE = new byte[256];
+
+    static {
+        for (int remaining = 1; remaining <= 8; remaining ++) {
+            for (int available = 1; available <= 8; available ++) {
+                int code = (remaining << 4) | available;
+                PROB_OF_CODE[code] = (double) remaining / (double) available;
+                int divisor = remaining;
+                for (int rest = available; rest != 0; ) {
+                    int t = divisor % rest;
+                    divisor = rest;
+                    rest = t;
+                }
+                REDUCED_CODE[code] = (byte) (((remaining / divisor) << 4) | (available / divisor));
+            }
+        }
+    }
+
+    private final int rows;
+    private final int cols;
+    private final ByteTable states;
+    private final ByteTable probs;
+    private final ProbabilityBuckets frontierCells;
+    private final RankedIntSet problessCells;
+    private final MappedByteBuffer[] mappings; // Empty for a store on the heap.
+    private final boolean resumed; // Whether the cells hold the state of an earlier solve.
+
+    /**
+     * Creates a store on the heap.
+     */
+    CellStateStore(int rows, int cols) {
+        int numCells = rows * cols;
+        this.rows = rows;
+        this.cols = cols;
+        states = new ArrayTable(numCells);
+        probs = new ArrayTable(numCells);
+        frontierCells = new ProbabilityBuckets(numCells);
+        problessCells = new RankedIntSet(numCells);
+        mappings = new MappedByteBuffer[0];
+        resumed = false;
+    }
+
+    private CellStateStore(int rows, int cols, MappedByteBuffer[] mappings, boolean resumed) {
+        this.rows = rows;
+        this.cols = cols;
+        this.mappings = mappings;
+        this.resumed = resumed;
+        states = new BufferTable(mappings[1]);
+        probs = new BufferTable(mappings[2]);
+        frontierCells = new ProbabilityBuckets(intView(mappings[3]));
+        problessCells = new RankedIntSet(intView(mappings[4]));
+    }
+
+    /**
+     * Creates a store in a memory-mapped file, replacing whatever 'fileName' held. Each table is
+     * a single mapping, so a mapped store holds at most Integer.MAX_VALUE / 4 cells.
+     */
+    static CellStateStore create(String fileName, int rows, int cols) throws IOException {
+        long numCells = (long) rows * cols;
+        if (4 * numCells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid too large for a mapped solver state: " +
+                    rows + " x " + cols);
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer[] mappings = map(channel, rows, cols);
+            mappings[0].putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(1);
+            // The mappings stay valid once the channel is closed.
+            return new CellStateStore(rows, cols, mappings, false);
+        }
+    }
+
+    /**
+     * Opens the store that create() made in 'fileName', to resume the solve it was paused in.
+     * Throws IOException if the file is not a solver state, or if the solver did not stop
+     * between moves (it died, or is still running).
+     */
+    static CellStateStore open(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a solver state file: " + fileName);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a solver state file: " + fileName);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported solver state version: " + version);
+            }
+            int rows = header.getInt();
+            int cols = header.getInt();
+            long numCells = (long) rows * cols;
+            // Checked before mapping, as a mapping past the end would grow the file.
+            if (!Minesweeper.isValidShape(rows, cols) || 4 * numCells > Integer.MAX_VALUE ||
+                    channel.size() != tablesOffset(numCells) + NUM_TABLES * 4 * numCells) {
+                throw new IOException("Corrupt solver state file: " + fileName);
+            }
+            if (header.getInt(CLEAN_OFFSET) != 1) {
+                throw new IOException("The solver state in " + fileName +
+                        " was not left between moves");
+            }
+            return new CellStateStore(rows, cols, map(channel, rows, cols), true);
+        }
+    }
+
+    // Maps the header and the tables of a rows x cols store, growing the file to fit them.
+    private static MappedByteBuffer[] map(FileChannel channel, int rows, int cols)
+            throws IOException {
+        long numCells = (long) rows * cols;
+        long tablesOffset = tablesOffset(numCells);
+        MappedByteBuffer[] mappings = new MappedByteBuffer[3 + NUM_TABLES];
+        mappings[0] = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        mappings[1] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, numCells);
+        mappings[2] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + numCells,
+                numCells);
+        for (int table = 0; table < NUM_TABLES; table ++) {
+            mappings[3 + table] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    tablesOffset + table * 4 * numCells, 4 * numCells);
+        }
+        return mappings;
+    }
+
+    private static long tablesOffset(long numCells) {
+        return (HEADER_SIZE + 2 * numCells + 7) & ~7L;
+    }
+
+    private static IntBuffer intView(ByteBuffer buffer) {
+        return buffer.order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns whether the cells hold the state of an earlier, paused solve (see open()) rather
+     * than a fully covered board.
+     */
+    boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Records whether the solver is stopped between moves, with the cells in a state it can
+     * resume from. Nothing to do on the heap.
+     */
+    void setClean(boolean clean) {
+        if (mappings.length == 0) return;
+        mappings[0].putInt(CLEAN_OFFSET, clean ? 1 : 0);
+        mappings[0].force();
+    }
+
+    /**
+     * Returns the # of neighboring mines of uncovered cell 'index', or COVERED.
+     */
+    int getKnown(int index) {
+        return (states.get(index) & KNOWN_MASK) - 1;
+    }
+
+    void setKnown(int index, int value) {
+        states.put(index, (states.get(index) & ~KNOWN_MASK) | (value + 1));
+    }
+
+    /**
+     * Returns whether cell 'index' is covered and not deduced to be a mine.
+     */
+    boolean isAvailable(int index) {
+        return (states.get(index) & (KNOWN_MASK | MINE)) == 0;
+    }
+
+    boolean isMine(int index) {
+        return (states.get(index) & MINE) != 0;
+    }
+
+    void setMine(int index) {
+        states.put(index, states.get(index) | MINE);
+    }
+
+    boolean isDirty(int index) {
+        return (states.get(index) & DIRTY) != 0;
+    }
+
+    void setDirty(int index, boolean dirty) {
+        int state = states.get(index);
+        states.put(index, dirty ? state | DIRTY : state & ~DIRTY);
+    }
+
+    /**
+     * Returns whether numbered cell 'index' was found to have all its mines marked (so its
+     * other covered neighbors are safe).
+     */
+    boolean isSatisfied(int index) {
+        return (states.get(index) & SATISFIED) != 0;
+    }
+
+    void setSatisfied(int index) {
+        states.put(index, states.get(index) | SATISFIED);
+    }
+
+    /**
+     * Returns the probability code of cell 'index'; equal codes are equal probabilities.
+     */
+    int getProbCode(int index) {
+        return probs.get(index) & 0xFF;
+    }
+
+    void setProbCode(int index, int code) {
+        probs.put(index, code);
+    }
+
+    double getProb(int index) {
+        return PROB_OF_CODE[probs.get(index) & 0xFF];
+    }
+
+    /**
+     * Returns the code of probability remaining / available (0 < remaining < available <= 8).
+     */
+    static int probCode(int remaining, int available) {
+        return REDUCED_CODE[(remaining << 4) | available];
+    }
+
+    static double probOf(int code) {
+        return PROB_OF_CODE[code];
+    }
+
+    // Covered, unmarked cells partitioned by whether they have a probability.
+    ProbabilityBuckets getFrontierCells() {
+        return frontierCells;
+    }
+
+    RankedIntSet getProblessCells() {
+        return problessCells;
+    }
+
+    /**
+     * Writes the changes to a mapped store out to its file. Nothing to do on the heap.
+     */
+    void force() {
+        for (MappedByteBuffer mapping : mappings) {
+            mapping.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    // The state or probability bytes of all the cells. Plain arrays on the heap, which are
+    // noticeably faster on the solver's hot path than heap ByteBuffers.
+    private interface ByteTable {
+        int get(int index);
+
+        void put(int index, int value);
+    }
+
+    private static final class ArrayTable implements ByteTable {
+        private final byte[] bytes;
+
+        ArrayTable(int size) {
+            bytes = new byte[size];
+        }
+
+        @Override
+        public int get(int index) {
+            return bytes[index];
+        }
+
+        @Override
+        public void put(int index, int value) {
+            bytes[index] = (byte) value;
+        }
+    }
+
+    private static final class BufferTable implements ByteTable {
+        private final ByteBuffer buffer;
+
+        BufferTable(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int get(int index) {
+            return buffer.get(index);
+        }
+
+        @Override
+        public void put(int index, int value) {
+            buffer.put(index, (byte) value);
+        }
+    }
+}
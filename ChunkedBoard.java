@@ -0,0 +1,335 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A board of up to 2^31 - 1 rows and columns that is never allocated as a whole. It is split into
+ * chunks of CHUNK_SIZE x CHUNK_SIZE cells, and a chunk's mines are generated on first access from
+ * a seed derived from the board seed and the chunk's position, so any chunk can be thrown away
+ * and regenerated identically. Every cell holds a mine with probability 'density', except the 3x3
+ * cells around the start cell, which the first move exposes.
+ *
+ * Chunks are kept in an LRU cache of a bounded # of chunks. An evicted chunk that was never
+ * touched (no cell uncovered or flagged) costs nothing; the uncovered and flagged bits of a
+ * touched one (256 longs, against the 4096 bytes of the same cells in a Minesweeper) are set
+ * aside and restored when it comes back. So memory grows with the explored area only, never
+ * with the board.
+ *
+ * Unlike Minesweeper the # of mines is not fixed (only their density) and a game cannot be won:
+ * it goes on until a mine is hit. A cascade stops after MAX_CASCADE_CELLS cells; the zero cells
+ * it did not finish still show their covered neighbors, which are safe.
+ *
+ * Cells are addressed by row x and column y, and listed (see getRevealedCell) as packed longs,
+ * (long) x << 32 | y.
+ */
+class ChunkedBoard {
+    static final int CHUNK_SHIFT = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // Cells per chunk row, one long of bits.
+    static final int MIN_CACHE_CHUNKS = 16;
+    static final int MAX_CASCADE_CELLS = 1 << 20;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int rows;
+    private final int cols;
+    private final double density;
+    private final long seed;
+    private final int startX;
+    private final int startY;
+
+    private final int maxChunks;
+    // Resident chunks by key (see chunkKey), least recently used first.
+    private final LinkedHashMap<Long, Chunk> chunks;
+    // The state of the evicted touched chunks: uncovered bits, then flagged bits, per row.
+    private final HashMap<Long, long[]> spilled = new HashMap<Long, long[]>();
+    private long lastKey = -1; // Lookups of the same chunk in a row skip the map.
+    private Chunk lastChunk;
+    private long chunksGenerated;
+    private long evictions;
+
+    private boolean isGameOver;
+    private long numUncovered;
+
+    // Cells uncovered by the last exposeCell call, packed.
+    private long[] revealedCells = new long[16];
+    private int numRevealedCells;
+    private long[] cascadeQueue = new long[64]; // Ring buffer of pending zero cells.
+
+    /**
+     * One chunk: the bits of row r of the chunk are in word r, with column c at bit c. (Shifts by
+     * a board column y use its low CHUNK_SHIFT bits, i.e. the column within the chunk.)
+     */
+    private static class Chunk {
+        final long[] mines = new long[CHUNK_SIZE];
+        long[] state; // Uncovered bits, then flagged bits; null while untouched.
+    }
+
+    ChunkedBoard(int rows, int cols, double density, long seed, int maxChunks) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Invalid board size: " + rows + " x " + cols);
+        }
+        if (!(density >= 0.0 && density < 1.0)) {
+            throw new IllegalArgumentException("Invalid mine density: " + density);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.density = density;
+        this.seed = seed;
+        this.startX = rows / 2;
+        this.startY = cols / 2;
+        this.maxChunks = Math.max(maxChunks, MIN_CACHE_CHUNKS);
+        chunks = new LinkedHashMap<Long, Chunk>(2 * this.maxChunks, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() <= ChunkedBoard.this.maxChunks) return false;
+                evict(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getCols() {
+        return cols;
+    }
+
+    double getDensity() {
+        return density;
+    }
+
+    /**
+     * The cell the game starts from: no mine in it or around it.
+     */
+    int getStartX() {
+        return startX;
+    }
+
+    int getStartY() {
+        return startY;
+    }
+
+    boolean isValid(int x, int y) {
+        return x >= 0 && x < rows && y >= 0 && y < cols;
+    }
+
+    /**
+     * Exposes the cell given by (x, y). Returns true if it was a mine, which ends the game.
+     */
+    boolean exposeCell(int x, int y) {
+        numRevealedCells = 0;
+        if (isGameOver || !isCovered(x, y)) return isGameOver;
+        if (isMine(x, y)) {
+            setUncovered(x, y);
+            isGameOver = true;
+            return true;
+        }
+        setUncovered(x, y);
+        if (countNeighborMines(x, y) != 0) return false;
+        // Cascade over the zero cells, breadth first.
+        long[] queue = cascadeQueue;
+        int head = 0;
+        int tail = 0;
+        queue[tail ++] = pack(x, y);
+        int uncovered = 1;
+        while (head != tail && uncovered < MAX_CASCADE_CELLS) {
+            long cell = queue[head ++ & (queue.length - 1)];
+            int cx = unpackX(cell);
+            int cy = unpackY(cell);
+            // Bounds clamped to the board: cx + 1 overflows in the last row of 2^31 - 1.
+            for (int nx = Math.max(cx - 1, 0); nx <= Math.min(cx + 1, rows - 1); nx ++) {
+                for (int ny = Math.max(cy - 1, 0); ny <= Math.min(cy + 1, cols - 1); ny ++) {
+                    if (!isCovered(nx, ny)) continue;
+                    // Neighbors of a zero cell are never mines.
+                    setUncovered(nx, ny);
+                    uncovered ++;
+                    if (countNeighborMines(nx, ny) != 0) continue;
+                    if (tail - head == queue.length) {
+                        long[] grown = new long[2 * queue.length];
+                        for (int i = head; i != tail; i ++) {
+                            grown[i - head] = queue[i & (queue.length - 1)];
+                        }
+                        tail -= head;
+                        head = 0;
+                        queue = cascadeQueue = grown;
+                    }
+                    queue[tail ++ & (queue.length - 1)] = pack(nx, ny);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns what a player can see at (x, y): the # of neighboring mines if the cell is
+     * uncovered, -1 if it is covered.
+     */
+    int getSnapshotValue(int x, int y) {
+        return isCovered(x, y) ? -1 : countNeighborMines(x, y);
+    }
+
+    boolean isCovered(int x, int y) {
+        long[] state = chunk(x, y).state;
+        return state == null || (state[x & CHUNK_MASK] & 1L << y) == 0;
+    }
+
+    boolean isFlagged(int x, int y) {
+        long[] state = chunk(x, y).state;
+        return state != null && (state[CHUNK_SIZE + (x & CHUNK_MASK)] & 1L << y) != 0;
+    }
+
+    /**
+     * Flags (covered) cell (x, y) as a mine, or removes the flag.
+     */
+    void setFlagged(int x, int y, boolean flagged) {
+        long[] state = touch(chunk(x, y));
+        if (flagged) {
+            state[CHUNK_SIZE + (x & CHUNK_MASK)] |= 1L << y;
+        } else {
+            state[CHUNK_SIZE + (x & CHUNK_MASK)] &= ~(1L << y);
+        }
+    }
+
+    boolean isGameOver() {
+        return isGameOver;
+    }
+
+    long getNumUncovered() {
+        return numUncovered;
+    }
+
+    /**
+     * Returns the # of cells uncovered by the last exposeCell call.
+     */
+    int getNumRevealedCells() {
+        return numRevealedCells;
+    }
+
+    /**
+     * Returns the i-th cell uncovered by the last exposeCell call, packed.
+     */
+    long getRevealedCell(int i) {
+        return revealedCells[i];
+    }
+
+    static long pack(int x, int y) {
+        return (long) x << 32 | y;
+    }
+
+    static int unpackX(long cell) {
+        return (int) (cell >>> 32);
+    }
+
+    static int unpackY(long cell) {
+        return (int) cell;
+    }
+
+    int getResidentChunks() {
+        return chunks.size();
+    }
+
+    int getSpilledChunks() {
+        return spilled.size();
+    }
+
+    long getChunksGenerated() {
+        return chunksGenerated;
+    }
+
+    long getEvictions() {
+        return evictions;
+    }
+
+    private boolean isMine(int x, int y) {
+        return (chunk(x, y).mines[x & CHUNK_MASK] & 1L << y) != 0;
+    }
+
+    private int countNeighborMines(int x, int y) {
+        int count = 0;
+        int column = y & CHUNK_MASK;
+        if (column != 0 && column != CHUNK_MASK) {
+            // The 3 columns are in the same word of each row: count them at once. The bits past
+            // the last column of the board are never set.
+            for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, rows - 1); nx ++) {
+                count += Long.bitCount(chunk(nx, y).mines[nx & CHUNK_MASK] >>> (column - 1) & 7L);
+            }
+            return isMine(x, y) ? count - 1 : count;
+        }
+        for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, rows - 1); nx ++) {
+            for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, cols - 1); ny ++) {
+                if ((nx != x || ny != y) && isMine(nx, ny)) count ++;
+            }
+        }
+        return count;
+    }
+
+    private void setUncovered(int x, int y) {
+        long[] state = touch(chunk(x, y));
+        state[x & CHUNK_MASK] |= 1L << y;
+        numUncovered ++;
+        if (numRevealedCells == revealedCells.length) {
+            long[] grown = new long[2 * numRevealedCells];
+            System.arraycopy(revealedCells, 0, grown, 0, numRevealedCells);
+            revealedCells = grown;
+        }
+        revealedCells[numRevealedCells ++] = pack(x, y);
+    }
+
+    private static long[] touch(Chunk chunk) {
+        if (chunk.state == null) chunk.state = new long[2 * CHUNK_SIZE];
+        return chunk.state;
+    }
+
+    private static long chunkKey(int x, int y) {
+        return (long) (x >>> CHUNK_SHIFT) << 32 | (y >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Returns the chunk of cell (x, y), generating it (or bringing it back) if not resident.
+     */
+    private Chunk chunk(int x, int y) {
+        long key = chunkKey(x, y);
+        if (key == lastKey) return lastChunk;
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = generate(key);
+            chunk.state = spilled.remove(key);
+            chunks.put(key, chunk);
+        }
+        lastKey = key;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    private Chunk generate(long key) {
+        chunksGenerated ++;
+        Chunk chunk = new Chunk();
+        SplittableRandom random = new SplittableRandom(MinesUtil.mixSeed(seed, key));
+        int fromX = (int) (key >>> 32) << CHUNK_SHIFT;
+        int fromY = (int) key << CHUNK_SHIFT;
+        for (int r = 0; r < CHUNK_SIZE && fromX + r < rows; r ++) {
+            long bits = 0;
+            for (int c = 0; c < CHUNK_SIZE && fromY + c < cols; c ++) {
+                if (random.nextDouble() < density) bits |= 1L << c;
+            }
+            if (Math.abs(fromX + r - startX) <= 1) {
+                for (int y = startY - 1; y <= startY + 1; y ++) {
+                    if (y >= fromY && y < fromY + CHUNK_SIZE) bits &= ~(1L << (y - fromY));
+                }
+            }
+            chunk.mines[r] = bits;
+        }
+        return chunk;
+    }
+
+    private void evict(long key, Chunk chunk) {
+        evictions ++;
+        if (chunk.state != null) spilled.put(key, chunk.state);
+        if (key == lastKey) {
+            lastKey = -1;
+            lastChunk = null;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.SplittableRandom;
+
+/**
+ * Plays a ChunkedBoard with the single-cell rules of the other solvers, keeping no per-cell state
+ * of its own: its mine marks are the board's flags, and it only remembers bounded queues of
+ * cells. So it can explore a board of any size in the memory of the board's chunk cache (plus
+ * the set aside state of the explored chunks).
+ *
+ * A numbered cell is (re)checked whenever a neighbor of it is uncovered or flagged: if its flags
+ * account for all its mines, its other covered neighbors are exposed; if it has as many covered
+ * neighbors as mines, they are flagged. When no cell is left to check, it guesses a covered
+ * neighbor of a random recently seen undecided cell. It stops when a mine is hit, after
+ * 'maxMoves' moves, or when there is nothing left to guess next to.
+ */
+class ChunkedSolver {
+    private static final int WORK_CAPACITY = 1 << 20; // Cells waiting to be checked.
+    private static final int UNDECIDED_CAPACITY = 1 << 12; // Recent undecided cells, for guesses.
+
+    private final ChunkedBoard board;
+    private final SplittableRandom random;
+    private final long maxMoves;
+    // The last row and column of the board. Neighbor loops are clamped to them, as x + 1
+    // overflows next to the last of 2^31 - 1 rows or columns.
+    private final int lastRow;
+    private final int lastCol;
+
+    // Cells to check, a bounded FIFO. Dropped cells are only rechecked if a neighbor changes.
+    private final long[] work = new long[WORK_CAPACITY];
+    private int workHead;
+    private int workSize;
+    private long dropped;
+    // Undecided numbered cells, in no order. Once full, new ones overwrite old ones in turn.
+    private final long[] undecided = new long[UNDECIDED_CAPACITY];
+    private int numUndecided;
+    private int nextOverwritten;
+
+    private long moves;
+    private long guesses;
+    private final long[] covered = new long[8]; // Scratch space: covered neighbors of a cell.
+
+    ChunkedSolver(ChunkedBoard board, long seed, long maxMoves) {
+        this.board = board;
+        this.random = new SplittableRandom(seed);
+        this.maxMoves = maxMoves;
+        lastRow = board.getRows() - 1;
+        lastCol = board.getCols() - 1;
+    }
+
+    void solve() {
+        expose(board.getStartX(), board.getStartY(), false);
+        while (!board.isGameOver() && moves < maxMoves) {
+            if (workSize == 0 && !guess()) return;
+            long cell = work[workHead];
+            workHead = (workHead + 1) & (WORK_CAPACITY - 1);
+            workSize --;
+            check(ChunkedBoard.unpackX(cell), ChunkedBoard.unpackY(cell));
+        }
+    }
+
+    long getMoves() {
+        return moves;
+    }
+
+    long getGuesses() {
+        return guesses;
+    }
+
+    /**
+     * Returns the # of cells that did not fit in the work queue.
+     */
+    long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Applies the single-cell rules to uncovered cell (x, y).
+     */
+    private void check(int x, int y) {
+        int value = board.getSnapshotValue(x, y);
+        int numCovered = 0;
+        int numFlagged = 0;
+        for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, lastRow); nx ++) {
+            for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, lastCol); ny ++) {
+                if (!board.isCovered(nx, ny)) continue;
+                if (board.isFlagged(nx, ny)) {
+                    numFlagged ++;
+                } else {
+                    covered[numCovered ++] = ChunkedBoard.pack(nx, ny);
+                }
+            }
+        }
+        if (numCovered == 0) return;
+        if (value == numFlagged) {
+            for (int i = 0; i < numCovered && !board.isGameOver() && moves < maxMoves; i ++) {
+                long cell = covered[i];
+                // An earlier move's cascade may have uncovered it.
+                int cx = ChunkedBoard.unpackX(cell);
+                int cy = ChunkedBoard.unpackY(cell);
+                if (board.isCovered(cx, cy)) expose(cx, cy, false);
+            }
+        } else if (value - numFlagged == numCovered) {
+            for (int i = 0; i < numCovered; i ++) {
+                int cx = ChunkedBoard.unpackX(covered[i]);
+                int cy = ChunkedBoard.unpackY(covered[i]);
+                board.setFlagged(cx, cy, true);
+                addNeighbors(cx, cy);
+            }
+        } else {
+            if (numUndecided < UNDECIDED_CAPACITY) {
+                undecided[numUndecided ++] = ChunkedBoard.pack(x, y);
+            } else {
+                undecided[nextOverwritten] = ChunkedBoard.pack(x, y);
+                nextOverwritten = (nextOverwritten + 1) & (UNDECIDED_CAPACITY - 1);
+            }
+        }
+    }
+
+    /**
+     * Exposes a random covered, unflagged neighbor of a random undecided cell. Returns false if
+     * there is none.
+     */
+    private boolean guess() {
+        while (numUndecided > 0) {
+            int slot = random.nextInt(numUndecided);
+            long cell = undecided[slot];
+            int x = ChunkedBoard.unpackX(cell);
+            int y = ChunkedBoard.unpackY(cell);
+            int numCovered = 0;
+            for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, lastRow); nx ++) {
+                for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, lastCol); ny ++) {
+                    if (board.isCovered(nx, ny) && !board.isFlagged(nx, ny)) {
+                        covered[numCovered ++] = ChunkedBoard.pack(nx, ny);
+                    }
+                }
+            }
+            if (numCovered == 0) {
+                // Decided since: drop it, moving the last one into its slot.
+                undecided[slot] = undecided[-- numUndecided];
+                continue;
+            }
+            long target = covered[random.nextInt(numCovered)];
+            guesses ++;
+            expose(ChunkedBoard.unpackX(target), ChunkedBoard.unpackY(target), true);
+            return true;
+        }
+        return false;
+    }
+
+    private void expose(int x, int y, boolean guess) {
+        board.exposeCell(x, y);
+        moves ++;
+        if (MinesUtil.DBG) MinesUtil.println((guess ? "Guess: " : "Safe: ") + x + " , " + y);
+        if (board.isGameOver()) return;
+        for (int i = 0; i < board.getNumRevealedCells(); i ++) {
+            long cell = board.getRevealedCell(i);
+            int cx = ChunkedBoard.unpackX(cell);
+            int cy = ChunkedBoard.unpackY(cell);
+            addWork(cell);
+            // The neighbors of a zero cell were uncovered by the same cascade.
+            if (board.getSnapshotValue(cx, cy) != 0) addNeighbors(cx, cy);
+        }
+    }
+
+    /**
+     * Queues the uncovered neighbors of (x, y), whose constraints it may resolve.
+     */
+    private void addNeighbors(int x, int y) {
+        for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, lastRow); nx ++) {
+            for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, lastCol); ny ++) {
+                if ((nx != x || ny != y) && !board.isCovered(nx, ny)) {
+                    addWork(ChunkedBoard.pack(nx, ny));
+                }
+            }
+        }
+    }
+
+    private void addWork(long cell) {
+        if (workSize == WORK_CAPACITY) {
+            dropped ++;
+            return;
+        }
+        work[(workHead + workSize) & (WORK_CAPACITY - 1)] = cell;
+        workSize ++;
+    }
+}
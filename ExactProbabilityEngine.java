@@ -0,0 +1,602 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes exact mine probabilities for the frontier: the covered cells (not marked as mines) next
+ * to at least one uncovered numbered cell.
+ *
+ * Every numbered cell is a constraint "the sum of my covered neighbors is (count - marked mines)".
+ * The frontier is split into connected components (cells linked by a shared constraint), and the
+ * consistent mine assignments of each component are counted by # of mines, with a dynamic program
+ * over the cells in order whose state is the residual count of every partially assigned
+ * constraint (i.e. backtracking with memoized sub-results). The components are then weighted
+ * against each other and against the cells off the frontier by the total # of mines left:
+ * a frontier assignment with m mines leaves C(R, M - m) ways to place the rest.
+ *
+ * Components that are too large for the budget (cells, states per step, or time) are not
+ * enumerated; their cells get UNKNOWN_PROB so the caller can fall back to its heuristic.
+ */
+class ExactProbabilityEngine {
+    static final double UNKNOWN_PROB = -1.0;
+
+    // The residuals of the open constraints are packed 4 bits each in a long.
+    private static final int MAX_OPEN_CONSTRAINTS = 16;
+    // Not a state: residuals are at most 8, so no state has all 4 bits of every slot set. (Any
+    // other negative value is a state whose last slot holds a residual of 8 or more.)
+    private static final long INFEASIBLE = -1L;
+
+    /**
+     * What a solver knows about the board. Cells are row-major indices x * cols + y.
+     */
+    interface View {
+        int getRows();
+
+        int getCols();
+
+        /**
+         * Returns the # of neighboring mines of an uncovered cell, -1 for a covered cell.
+         */
+        int getValue(int index);
+
+        boolean isMarkedAsMine(int index);
+    }
+
+    private final int maxComponentCells;
+    private final int maxStatesPerStep;
+    private final long timeBudgetNanos;
+
+    // Results of the last compute() call.
+    private int[] cells = new int[0]; // The frontier, sorted.
+    private double[] probs = new double[0];
+    private int numCells;
+    private double interiorProb;
+    private int numExactComponents;
+    private int numFallbackComponents;
+
+    // Scratch space for the neighbors of a cell.
+    private final int[] neighbors = new int[8];
+
+    ExactProbabilityEngine() {
+        this(256, 1 << 15, 50_000_000L);
+    }
+
+    /**
+     * @param maxComponentCells largest component (in cells) that is enumerated.
+     * @param maxStatesPerStep largest # of distinct partial states kept per cell of a component.
+     * @param timeBudgetNanos time after which the remaining components fall back.
+     */
+    ExactProbabilityEngine(int maxComponentCells, int maxStatesPerStep, long timeBudgetNanos) {
+        this.maxComponentCells = maxComponentCells;
+        this.maxStatesPerStep = maxStatesPerStep;
+        this.timeBudgetNanos = timeBudgetNanos;
+    }
+
+    /**
+     * Computes the probabilities.
+     *
+     * @param frontier all the frontier cells (in any order), in frontier[0, numFrontier).
+     * @param remainingMines mines not marked yet: total mines - cells marked as mines.
+     * @param numUnknownCells covered cells not marked as mines, on and off the frontier.
+     */
+    void compute(View view, int[] frontier, int numFrontier, int remainingMines,
+            int numUnknownCells) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        numCells = numFrontier;
+        if (cells.length < numFrontier) {
+            cells = new int[numFrontier];
+            probs = new double[numFrontier];
+        }
+        System.arraycopy(frontier, 0, cells, 0, numFrontier);
+        Arrays.sort(cells, 0, numFrontier);
+        Arrays.fill(probs, 0, numFrontier, UNKNOWN_PROB);
+        numExactComponents = 0;
+        numFallbackComponents = 0;
+
+        // Split the frontier into components, linked by the constraints.
+        int[] parent = new int[numFrontier];
+        for (int i = 0; i < numFrontier; i ++) parent[i] = i;
+        List<Constraint> constraints = buildConstraints(view, parent);
+        Map<Integer, Component> components = new HashMap<Integer, Component>();
+        for (int i = 0; i < numFrontier; i ++) {
+            int root = find(parent, i);
+            Component component = components.get(root);
+            if (component == null) {
+                component = new Component();
+                components.put(root, component);
+            }
+            component.positions.add(i);
+        }
+        for (Constraint constraint : constraints) {
+            components.get(find(parent, constraint.members[0])).constraints.add(constraint);
+        }
+
+        // Count the assignments of every component that fits the budget.
+        List<Component> exact = new ArrayList<Component>();
+        int numExactCells = 0;
+        for (Component component : components.values()) {
+            if (System.nanoTime() < deadline && component.positions.size() <= maxComponentCells &&
+                    component.enumerate(deadline)) {
+                exact.add(component);
+                numExactCells += component.positions.size();
+            } else {
+                numFallbackComponents ++;
+            }
+        }
+
+        // Weight the components by the # of mines left for the other cells.
+        int numOtherCells = numUnknownCells - numExactCells;
+        int maxFrontierMines = numExactCells;
+        double[] restWeight = binomialWeights(numOtherCells, remainingMines, maxFrontierMines);
+        double[][] prefix = new double[exact.size() + 1][];
+        double[][] suffix = new double[exact.size() + 1][];
+        prefix[0] = new double[] {1.0};
+        suffix[exact.size()] = new double[] {1.0};
+        for (int c = 0; c < exact.size(); c ++) {
+            prefix[c + 1] = convolve(prefix[c], exact.get(c).ways);
+        }
+        for (int c = exact.size() - 1; c >= 0; c --) {
+            suffix[c] = convolve(exact.get(c).ways, suffix[c + 1]);
+        }
+        for (int c = 0; c < exact.size(); c ++) {
+            Component component = exact.get(c);
+            double[] others = convolve(prefix[c], suffix[c + 1]);
+            double[] weight = new double[component.ways.length];
+            for (int k = 0; k < weight.length; k ++) {
+                for (int j = 0; j < others.length; j ++) {
+                    weight[k] += others[j] * restWeight[k + j];
+                }
+            }
+            if (component.marginals(weight, probs)) {
+                numExactComponents ++;
+            } else {
+                numFallbackComponents ++;
+            }
+        }
+
+        // The cells off the exact frontier share the expected # of mines left for them.
+        interiorProb = UNKNOWN_PROB;
+        if (numOtherCells > 0) {
+            double[] total = prefix[exact.size()];
+            double sum = 0.0;
+            double expectedMines = 0.0;
+            for (int m = 0; m < total.length; m ++) {
+                double weight = total[m] * restWeight[m];
+                sum += weight;
+                expectedMines += weight * (remainingMines - m);
+            }
+            if (sum > 0.0) {
+                interiorProb = expectedMines / sum / numOtherCells;
+            }
+        }
+        if (MinesUtil.DBG) MinesUtil.println("Exact probabilities: frontier = " +
+                numFrontier + ", exact components = " +
+                numExactComponents + ", fallback components = " + numFallbackComponents);
+    }
+
+    int getNumCells() {
+        return numCells;
+    }
+
+    /**
+     * Returns the i-th frontier cell of the last compute() call (cells are sorted).
+     */
+    int getCell(int i) {
+        return cells[i];
+    }
+
+    /**
+     * Returns the mine probability of getCell(i), or UNKNOWN_PROB if its component fell back.
+     */
+    double getProbability(int i) {
+        return probs[i];
+    }
+
+    /**
+     * Returns the mine probability of a covered cell off the frontier (or in a fallback
+     * component), or UNKNOWN_PROB if there are none.
+     */
+    double getInteriorProbability() {
+        return interiorProb;
+    }
+
+    int getNumExactComponents() {
+        return numExactComponents;
+    }
+
+    int getNumFallbackComponents() {
+        return numFallbackComponents;
+    }
+
+    /**
+     * Builds one constraint per numbered cell next to the frontier, and unions the frontier cells
+     * that share a constraint.
+     */
+    private List<Constraint> buildConstraints(View view, int[] parent) {
+        int rows = view.getRows();
+        int cols = view.getCols();
+        int[] numbered = new int[8 * numCells];
+        int numNumbered = 0;
+        for (int i = 0; i < numCells; i ++) {
+            int count = MinesUtil.neighborsOf(cells[i], rows, cols, neighbors);
+            for (int n = 0; n < count; n ++) {
+                if (view.getValue(neighbors[n]) > 0) numbered[numNumbered ++] = neighbors[n];
+            }
+        }
+        Arrays.sort(numbered, 0, numNumbered);
+        List<Constraint> constraints = new ArrayList<Constraint>();
+        int[] members = new int[8];
+        for (int i = 0; i < numNumbered; i ++) {
+            if (i > 0 && numbered[i] == numbered[i - 1]) continue;
+            int target = view.getValue(numbered[i]);
+            int numMembers = 0;
+            int count = MinesUtil.neighborsOf(numbered[i], rows, cols, neighbors);
+            for (int n = 0; n < count; n ++) {
+                int neighbor = neighbors[n];
+                if (view.getValue(neighbor) != -1) continue;
+                if (view.isMarkedAsMine(neighbor)) {
+                    target --;
+                } else {
+                    int position = Arrays.binarySearch(cells, 0, numCells, neighbor);
+                    if (position >= 0) members[numMembers ++] = position;
+                }
+            }
+            if (numMembers == 0) continue;
+            constraints.add(new Constraint(target, Arrays.copyOf(members, numMembers)));
+            for (int m = 1; m < numMembers; m ++) {
+                union(parent, members[0], members[m]);
+            }
+        }
+        return constraints;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+
+    /**
+     * Returns w[m] proportional to C(numCells, remainingMines - m) for m in [0, maxMines]: the
+     * # of ways to place the mines that the frontier does not take on the other cells.
+     */
+    private static double[] binomialWeights(int numCells, int remainingMines, int maxMines) {
+        double[] logWeight = new double[maxMines + 1];
+        double maxLog = Double.NEGATIVE_INFINITY;
+        for (int m = 0; m <= maxMines; m ++) {
+            int x = remainingMines - m;
+            if (x < 0 || x > numCells) {
+                logWeight[m] = Double.NEGATIVE_INFINITY;
+            } else {
+                logWeight[m] = logBinomial(numCells, x);
+                maxLog = Math.max(maxLog, logWeight[m]);
+            }
+        }
+        double[] weight = new double[maxMines + 1];
+        for (int m = 0; m <= maxMines; m ++) {
+            weight[m] = Math.exp(logWeight[m] - maxLog);
+        }
+        return weight;
+    }
+
+    private static double logBinomial(int n, int k) {
+        return logFactorial(n) - logFactorial(k) - logFactorial(n - k);
+    }
+
+    // log(n!) for small n, exactly.
+    private static final double[] LOG_FACTORIAL = new double[256];
+    static {
+        for (int n = 1; n < LOG_FACTORIAL.length; n ++) {
+            LOG_FACTORIAL[n] = LOG_FACTORIAL[n - 1] + Math.log(n);
+        }
+    }
+
+    /**
+     * Returns log(n!), from a table for small n and from Stirling's series otherwise (the error
+     * is far below what matters for the weights).
+     */
+    private static double logFactorial(int n) {
+        if (n < LOG_FACTORIAL.length) return LOG_FACTORIAL[n];
+        double x = n;
+        return x * Math.log(x) - x + 0.5 * Math.log(2.0 * Math.PI * x) + 1.0 / (12.0 * x) -
+                1.0 / (360.0 * x * x * x);
+    }
+
+    /**
+     * Returns the convolution of a and b, scaled so that its largest entry is 1 (only ratios
+     * matter, and this keeps the products of many components in range).
+     */
+    private static double[] convolve(double[] a, double[] b) {
+        double[] result = new double[a.length + b.length - 1];
+        double max = 0.0;
+        for (int i = 0; i < a.length; i ++) {
+            if (a[i] == 0.0) continue;
+            for (int j = 0; j < b.length; j ++) {
+                result[i + j] += a[i] * b[j];
+            }
+        }
+        for (double value : result) max = Math.max(max, value);
+        if (max > 0.0) {
+            for (int i = 0; i < result.length; i ++) result[i] /= max;
+        }
+        return result;
+    }
+
+    /**
+     * A numbered cell: exactly 'target' of its 'members' (frontier positions) are mines.
+     */
+    private static class Constraint {
+        final int target;
+        final int[] members;
+        int[] ranks; // Sorted positions of the members in the component's cell order.
+
+        Constraint(int target, int[] members) {
+            this.target = target;
+            this.members = members;
+        }
+
+        int first() {
+            return ranks[0];
+        }
+
+        int last() {
+            return ranks[ranks.length - 1];
+        }
+    }
+
+    /**
+     * A connected component of the frontier, and the counts of its consistent assignments.
+     */
+    private class Component {
+        final List<Integer> positions = new ArrayList<Integer>();
+        final List<Constraint> constraints = new ArrayList<Constraint>();
+
+        int numCells;
+        int[] order; // Frontier positions, in the order they are assigned.
+        Step[] steps;
+        // forward[i]: partial state before cell i -> ways to assign cells [0, i) by # of mines.
+        // backward[i]: partial state before cell i -> ways to assign cells [i, n) by # of mines.
+        List<Map<Long, double[]>> forward;
+        List<Map<Long, double[]>> backward;
+        double[] ways; // ways[k]: assignments with k mines.
+
+        /**
+         * Counts the assignments. Returns false if the budget is exceeded.
+         */
+        boolean enumerate(long deadline) {
+            numCells = positions.size();
+            orderCells();
+            if (!computeSteps()) return false;
+
+            forward = new ArrayList<Map<Long, double[]>>(numCells + 1);
+            Map<Long, double[]> start = new HashMap<Long, double[]>();
+            start.put(0L, new double[] {1.0});
+            forward.add(start);
+            for (int i = 0; i < numCells; i ++) {
+                if (System.nanoTime() > deadline) return false;
+                Map<Long, double[]> next = new HashMap<Long, double[]>();
+                for (Map.Entry<Long, double[]> entry : forward.get(i).entrySet()) {
+                    for (int v = 0; v <= 1; v ++) {
+                        long key = transition(i, entry.getKey(), v);
+                        if (key == INFEASIBLE) continue;
+                        double[] poly = next.get(key);
+                        if (poly == null) {
+                            poly = new double[i + 2];
+                            next.put(key, poly);
+                        }
+                        double[] from = entry.getValue();
+                        for (int k = 0; k < from.length; k ++) poly[k + v] += from[k];
+                    }
+                }
+                if (next.isEmpty() || next.size() > maxStatesPerStep) return false;
+                forward.add(next);
+            }
+
+            backward = new ArrayList<Map<Long, double[]>>(numCells + 1);
+            for (int i = 0; i <= numCells; i ++) backward.add(null);
+            Map<Long, double[]> end = new HashMap<Long, double[]>();
+            end.put(0L, new double[] {1.0});
+            backward.set(numCells, end);
+            for (int i = numCells - 1; i >= 0; i --) {
+                if (System.nanoTime() > deadline) return false;
+                Map<Long, double[]> current = new HashMap<Long, double[]>();
+                Map<Long, double[]> after = backward.get(i + 1);
+                for (Long key : forward.get(i).keySet()) {
+                    double[] poly = new double[numCells - i + 1];
+                    boolean feasible = false;
+                    for (int v = 0; v <= 1; v ++) {
+                        long nextKey = transition(i, key, v);
+                        double[] rest = nextKey == INFEASIBLE ? null : after.get(nextKey);
+                        if (rest == null) continue;
+                        feasible = true;
+                        for (int k = 0; k < rest.length; k ++) poly[k + v] += rest[k];
+                    }
+                    if (feasible) current.put(key, poly);
+                }
+                backward.set(i, current);
+            }
+            ways = backward.get(0).get(0L);
+            return ways != null;
+        }
+
+        /**
+         * Stores the mine probability of every cell into 'probs', given weight[k] for the
+         * assignments of this component with k mines. Returns false if nothing is consistent.
+         */
+        boolean marginals(double[] weight, double[] probs) {
+            double total = 0.0;
+            for (int k = 0; k < ways.length; k ++) total += ways[k] * weight[k];
+            if (!(total > 0.0)) return false;
+            for (int i = 0; i < numCells; i ++) {
+                double mine = 0.0;
+                Map<Long, double[]> after = backward.get(i + 1);
+                for (Map.Entry<Long, double[]> entry : forward.get(i).entrySet()) {
+                    long nextKey = transition(i, entry.getKey(), 1);
+                    double[] rest = nextKey == INFEASIBLE ? null : after.get(nextKey);
+                    if (rest == null) continue;
+                    double[] before = entry.getValue();
+                    for (int a = 0; a < before.length; a ++) {
+                        if (before[a] == 0.0) continue;
+                        for (int b = 0; b < rest.length; b ++) {
+                            mine += before[a] * rest[b] * weight[a + b + 1];
+                        }
+                    }
+                }
+                probs[order[i]] = Math.min(1.0, mine / total);
+            }
+            // The layers are only needed once.
+            forward = null;
+            backward = null;
+            return true;
+        }
+
+        /**
+         * Orders the cells breadth first through the constraints, so that few constraints are
+         * open (partly assigned) at any point, and sets the first / last rank of every constraint.
+         */
+        private void orderCells() {
+            Map<Integer, List<Constraint>> byCell = new HashMap<Integer, List<Constraint>>();
+            for (Constraint constraint : constraints) {
+                for (int member : constraint.members) {
+                    List<Constraint> list = byCell.get(member);
+                    if (list == null) {
+                        list = new ArrayList<Constraint>();
+                        byCell.put(member, list);
+                    }
+                    list.add(constraint);
+                }
+            }
+            int startCell = positions.get(0);
+            for (int position : positions) {
+                if (byCell.get(position).size() < byCell.get(startCell).size()) {
+                    startCell = position;
+                }
+            }
+            order = new int[numCells];
+            Map<Integer, Integer> rank = new HashMap<Integer, Integer>();
+            int head = 0;
+            int tail = 0;
+            order[tail ++] = startCell;
+            rank.put(startCell, 0);
+            while (head < tail) {
+                for (Constraint constraint : byCell.get(order[head ++])) {
+                    for (int member : constraint.members) {
+                        if (!rank.containsKey(member)) {
+                            rank.put(member, tail);
+                            order[tail ++] = member;
+                        }
+                    }
+                }
+            }
+            for (Constraint constraint : constraints) {
+                constraint.ranks = new int[constraint.members.length];
+                for (int m = 0; m < constraint.members.length; m ++) {
+                    constraint.ranks[m] = rank.get(constraint.members[m]);
+                }
+                Arrays.sort(constraint.ranks);
+            }
+        }
+
+        /**
+         * Precomputes, for every cell i, how the open constraints carry over from the state
+         * before cell i to the state after it. Returns false if too many are open at once.
+         */
+        private boolean computeSteps() {
+            int[][] open = new int[numCells + 1][];
+            List<Integer> current = new ArrayList<Integer>();
+            for (int i = 0; i <= numCells; i ++) {
+                current.clear();
+                for (int c = 0; c < constraints.size(); c ++) {
+                    Constraint constraint = constraints.get(c);
+                    if (constraint.first() < i && constraint.last() >= i) current.add(c);
+                }
+                if (current.size() > MAX_OPEN_CONSTRAINTS) return false;
+                open[i] = new int[current.size()];
+                for (int j = 0; j < current.size(); j ++) open[i][j] = current.get(j);
+            }
+            steps = new Step[numCells];
+            for (int i = 0; i < numCells; i ++) {
+                Step step = new Step();
+                List<Integer> closing = new ArrayList<Integer>();
+                for (int c = 0; c < constraints.size(); c ++) {
+                    if (constraints.get(c).last() == i) closing.add(c);
+                }
+                step.closeSlot = new int[closing.size()];
+                step.closeTarget = new int[closing.size()];
+                for (int j = 0; j < closing.size(); j ++) {
+                    Constraint constraint = constraints.get(closing.get(j));
+                    step.closeSlot[j] = slotOf(open[i], closing.get(j));
+                    step.closeTarget[j] = constraint.target;
+                }
+                int[] next = open[i + 1];
+                step.nextSlot = new int[next.length];
+                step.nextTarget = new int[next.length];
+                step.nextHasCell = new boolean[next.length];
+                step.nextCapacity = new int[next.length];
+                for (int j = 0; j < next.length; j ++) {
+                    Constraint constraint = constraints.get(next[j]);
+                    step.nextSlot[j] = slotOf(open[i], next[j]);
+                    step.nextTarget[j] = constraint.target;
+                    step.nextHasCell[j] = Arrays.binarySearch(constraint.ranks, i) >= 0;
+                    step.nextCapacity[j] = constraint.ranks.length -
+                            (-Arrays.binarySearch(constraint.ranks, i + 1) - 1);
+                }
+                steps[i] = step;
+            }
+            return true;
+        }
+
+        // Returns the slot of 'constraintId' in 'openIds', or -1 if the constraint opens here.
+        private int slotOf(int[] openIds, int constraintId) {
+            for (int j = 0; j < openIds.length; j ++) {
+                if (openIds[j] == constraintId) return j;
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the state after assigning v (0 or 1 mine) to cell i in state 'key', or
+         * INFEASIBLE if that breaks a constraint. A state packs the residual (mines still needed)
+         * of each open constraint into 4 bits.
+         */
+        private long transition(int i, long key, int v) {
+            Step step = steps[i];
+            // Constraints that end at cell i must be exactly satisfied by it.
+            for (int j = 0; j < step.closeSlot.length; j ++) {
+                int slot = step.closeSlot[j];
+                int residual = slot < 0 ? step.closeTarget[j] : (int) ((key >>> (4 * slot)) & 0xF);
+                if (residual != v) return INFEASIBLE;
+            }
+            long next = 0L;
+            for (int j = 0; j < step.nextSlot.length; j ++) {
+                int slot = step.nextSlot[j];
+                int residual = slot < 0 ? step.nextTarget[j] : (int) ((key >>> (4 * slot)) & 0xF);
+                if (step.nextHasCell[j]) residual -= v;
+                // The residual must still fit in the members that are not assigned yet.
+                if (residual < 0 || residual > step.nextCapacity[j]) return INFEASIBLE;
+                next |= ((long) residual) << (4 * j);
+            }
+            return next;
+        }
+    }
+
+    /**
+     * How the state changes across one cell of a component.
+     */
+    private static class Step {
+        int[] closeSlot; // Constraints ending at this cell: slot in the state, or -1 ...
+        int[] closeTarget; // ... and then their target.
+        int[] nextSlot; // Constraints open after this cell: slot in the state before, or -1 ...
+        int[] nextTarget; // ... and then their target.
+        boolean[] nextHasCell; // Whether the constraint contains this cell.
+        int[] nextCapacity; // # of its members after this cell.
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts many simultaneous games, played by people or bots, over a line based protocol on a
+ * loopback TCP port. Every connection is a session owning one game at a time, run on a thread of
+ * its own from a pool capped at 'maxSessions'; connections beyond that are refused. A session
+ * is closed when idle for IDLE_TIMEOUT_MILLIS or after MAX_COMMANDS commands, and boards are
+ * limited to MAX_CELLS cells. "solve" commands run on a separate pool of one thread per
+ * processor, so only those threads hold the per-thread state of the solvers (e.g. a pattern
+ * cache of a few MB with --patterns), whatever the # of sessions.
+ *
+ * Commands (one per line) and their replies (one line each, or "ERR message"):
+ *   new ROWS COLS MINES [SEED]  starts a game:          OK ROWS COLS MINES SEED
+ *   e X Y                       exposes row X column Y: STATE N INDEX:VALUE ... (the N cells
+ *                               it uncovered, with their counts, or * for a mine; STATE is
+ *                               PLAYING, WON or LOST)
+ *   solve                       lets the solver finish: STATE MOVES GUESSES
+ *   quit                                                BYE
+ * Cell indices are row-major, X * COLS + Y, as in Minesweeper.
+ */
+class GameServer {
+    static final String NEW_CMD = "new";
+    static final String EXPOSE_CMD = "e";
+    static final String SOLVE_CMD = "solve";
+    static final String QUIT_CMD = "quit";
+    static final String OK = "OK";
+    static final String ERROR = "ERR";
+    static final String PLAYING = "PLAYING";
+    static final String WON = "WON";
+    static final String LOST = "LOST";
+    static final char MINE = '*'; // The VALUE of an exposed mine.
+
+    // Per-session limits.
+    static final int MAX_CELLS = 1 << 20;
+    static final int IDLE_TIMEOUT_MILLIS = 60_000;
+    static final int MAX_COMMANDS = 10_000_000;
+
+    private final int port;
+    private final int maxSessions;
+    private final SolverOptions solverOptions; // Solver of the "solve" command.
+    private final boolean firstClickSafe;
+    private final ExecutorService solvers;
+
+    private final LongAdder sessions = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder games = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+
+    GameServer(int port, int maxSessions, SolverOptions solverOptions, boolean firstClickSafe) {
+        this.port = port;
+        this.maxSessions = maxSessions;
+        this.solverOptions = solverOptions;
+        this.firstClickSafe = firstClickSafe;
+        solvers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "solver");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Accepts connections until the process is stopped.
+     */
+    void run() throws IOException {
+        // No queue: a session either gets a thread right away or is refused.
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, maxSessions, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), runnable -> {
+                    Thread thread = new Thread(runnable, "session");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try (ServerSocket server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress())) {
+            System.out.println("Serving games on " + server.getLocalSocketAddress() +
+                    ", sessions <= " + maxSessions + ", solver = " + solverOptions.describe() +
+                    (firstClickSafe ? ", first click safe" : ""));
+            while (true) {
+                Socket socket = server.accept();
+                try {
+                    pool.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    refuse(socket);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            solvers.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the server's totals so far.
+     */
+    String summary() {
+        return "Sessions = " + sessions.sum() + ", refused = " + refused.sum() + ", games = " +
+                games.sum() + ", moves = " + moves.sum();
+    }
+
+    private void refuse(Socket socket) {
+        refused.increment();
+        try (socket) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(),
+                    StandardCharsets.US_ASCII);
+            out.write(ERROR + " too many sessions\n");
+            out.flush();
+        } catch (IOException e) {
+            // The client is gone already.
+        }
+    }
+
+    private void serve(Socket socket) {
+        sessions.increment();
+        try (socket) {
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                    StandardCharsets.US_ASCII));
+            Session session = new Session();
+            for (int commands = 0; commands < MAX_COMMANDS; commands ++) {
+                String line = in.readLine();
+                if (line == null) return;
+                boolean quit = line.trim().equals(QUIT_CMD);
+                out.write(quit ? "BYE" : session.execute(line));
+                out.write('\n');
+                out.flush();
+                if (quit) return;
+            }
+            out.write(ERROR + " command limit reached\n");
+            out.flush();
+        } catch (SocketTimeoutException e) {
+            if (MinesUtil.DBG) MinesUtil.println("Closing idle session " + socket);
+        } catch (IOException e) {
+            if (MinesUtil.DBG) MinesUtil.println("Session " + socket + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The game of one connection.
+     */
+    private class Session {
+        private Minesweeper board; // Null until the first "new".
+        private long seed;
+        private final GameStats stats = new GameStats(null);
+        private final StringBuilder reply = new StringBuilder();
+
+        /**
+         * Runs one command line and returns the reply.
+         */
+        String execute(String line) {
+            String[] args = line.trim().split("\\s+");
+            try {
+                if (args[0].equals(NEW_CMD) && (args.length == 4 || args.length == 5)) {
+                    return newGame(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                            Integer.parseInt(args[3]),
+                            args.length == 5 ? Long.parseLong(args[4]) : MinesUtil.randomSeed());
+                } else if (args[0].equals(EXPOSE_CMD) && args.length == 3) {
+                    return expose(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+                } else if (args[0].equals(SOLVE_CMD) && args.length == 1) {
+                    return solve();
+                }
+            } catch (NumberFormatException e) {
+                return ERROR + " bad number: " + e.getMessage();
+            }
+            return ERROR + " unknown command: " + line;
+        }
+
+        private String newGame(int rows, int cols, int numberOfMines, long seed) {
+            if (!Minesweeper.isValidShape(rows, cols) || (long) rows * cols > MAX_CELLS) {
+                return ERROR + " invalid board size: " + rows + " x " + cols;
+            }
+            if (numberOfMines < 0 || numberOfMines >= rows * cols) {
+                return ERROR + " invalid number of mines: " + numberOfMines;
+            }
+            board = new Minesweeper(rows, cols, numberOfMines, seed);
+            board.setFirstClickSafe(firstClickSafe);
+            board.setTrackRevealedCells(true);
+            this.seed = seed;
+            games.increment();
+            return OK + " " + rows + " " + cols + " " + numberOfMines + " " + seed;
+        }
+
+        private String expose(int x, int y) {
+            String error = checkPlaying();
+            if (error != null) return error;
+            if (x < 0 || y < 0 || x >= board.getRows() || y >= board.getCols()) {
+                return ERROR + " no cell at " + x + " " + y;
+            }
+            if (!board.isCovered(x, y)) return ERROR + " cell already uncovered";
+            board.exposeCell(x, y);
+            moves.increment();
+            reply.setLength(0);
+            reply.append(state()).append(' ').append(board.getNumRevealedCells());
+            int cols = board.getCols();
+            for (int i = 0; i < board.getNumRevealedCells(); i ++) {
+                int index = board.getRevealedCell(i);
+                reply.append(' ').append(index).append(':');
+                if (Cell.isMine(board.getCell(index / cols, index % cols))) {
+                    reply.append(MINE);
+                } else {
+                    reply.append(board.getSnapshotValue(index / cols, index % cols));
+                }
+            }
+            return reply.toString();
+        }
+
+        private String solve() {
+            String error = checkPlaying();
+            if (error != null) return error;
+            // The solver tracks the revealed cells itself when it needs them.
+            try {
+                solvers.submit(() -> solverOptions.solve(board, seed, null, false, stats)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ERROR + " interrupted";
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Solver failed", e.getCause());
+            }
+            board.setTrackRevealedCells(true);
+            moves.add(stats.getMoves());
+            return state() + " " + stats.getMoves() + " " + stats.getGuesses();
+        }
+
+        private String checkPlaying() {
+            if (board == null) return ERROR + " no game, start one with " + NEW_CMD;
+            if (board.isGameOver()) return ERROR + " game over";
+            return null;
+        }
+
+        private String state() {
+            if (!board.isGameOver()) return PLAYING;
+            return board.hasUserWon() ? WON : LOST;
+        }
+    }
+}
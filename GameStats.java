@@ -0,0 +1,46 @@
+/**
+ * Per-game counters filled in by a solver: the # of moves, how many of them were guesses, and
+ * (optionally) the time each move took, recorded into a histogram. A move's time is measured from
+ * the previous move (or the start of the game), so it covers the solver's analysis as well as
+ * the exposeCell call. Meant to be reused from game to game; nothing here allocates.
+ */
+class GameStats {
+    private final LatencyHistogram moveNanos; // May be null.
+    private int moves;
+    private int guesses;
+    private long lastMoveTime;
+
+    GameStats(LatencyHistogram moveNanos) {
+        this.moveNanos = moveNanos;
+    }
+
+    /**
+     * Resets the counters, at the start of a game.
+     */
+    void start() {
+        moves = 0;
+        guesses = 0;
+        lastMoveTime = System.nanoTime();
+    }
+
+    /**
+     * Records a move that was just made. 'guess' tells whether the cell was not proven safe.
+     */
+    void recordMove(boolean guess) {
+        moves ++;
+        if (guess) guesses ++;
+        if (moveNanos != null) {
+            long now = System.nanoTime();
+            moveNanos.record(now - lastMoveTime);
+            lastMoveTime = now;
+        }
+    }
+
+    int getMoves() {
+        return moves;
+    }
+
+    int getGuesses() {
+        return guesses;
+    }
+}
@@ -0,0 +1,636 @@
+import java.io.BufferedReader;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Solves a given minesweeper problem with the same rules as Solver, but keeps its state across
+ * moves instead of rescanning the whole grid on every move. After each move the board reports the
+ * cells it uncovered, and only the numbered cells next to those (and next to newly marked mines)
+ * are re-evaluated. The cost of a move is proportional to what changed, not to the grid area.
+ *
+ * The deductions are the ones of Solver's per-cell analysis: if all the mines around a numbered
+ * cell are accounted for, its other covered neighbors are safe; if its covered neighbors are
+ * exactly its mines, they are all mines. Otherwise it gives each available neighbor (remaining
+ * mines / available cells) as its mine probability.
+ *
+ * It picks the same moves as Solver, given the same seed: the first safe neighbor of the lowest
+ * index numbered cell that proves one (kept in a heap), else the engines' first safe cell, else
+ * a guess. Solver offers a covered cell for guessing at the running max of the probabilities its
+ * numbered neighbors give it, in index order; the lowest of those offers is the probability of
+ * its first numbered neighbor giving one, so that is what a covered cell is bucketed by, and
+ * ties go to the lowest (first neighbor, cell). Each bucket has a heap of those pairs, so that
+ * the pick is O(log n); a cell's first neighbor can change while its bucket does not, so the
+ * pairs that no longer hold are dropped when they reach the top. Like Solver, it draws a random
+ * probability-less cell, in index order, on every iteration, so that both use their random
+ * numbers alike.
+ *
+ * The per-cell state lives in a CellStateStore, on the heap by default or in a memory-mapped file
+ * for boards whose state should not grow the Java heap. A solve can be paused after a number of
+ * moves and resumed later from the same file, together with the game saved at that point.
+ */
+class IncrementalSolver {
+    private static final int HIGH_MINE_PROB_INT = 1000;
+    private static final int COVERED = CellStateStore.COVERED;
+    // Exact probabilities this close to 0 or 1 are treated as proofs.
+    private static final double EXACT_EPSILON = 1e-9;
+
+    private final Minesweeper board;
+    private final int rows;
+    private final int cols;
+    private final Random random;
+
+    // What the solver knows about every cell (row-major index): the # of neighboring mines if
+    // uncovered, COVERED otherwise; whether it was deduced to be a mine; and its probability.
+    // For an uncovered numbered cell that is the probability it gives its available neighbors
+    // (remaining mines / available cells), or 0 if it gives none. For a covered cell it is the
+    // probability given by its first (lowest index) numbered neighbor that gives one, or 0.
+    private final CellStateStore cells;
+    private final int numCells;
+    private int numMarkedAsMines;
+
+    // Covered, unmarked cells partitioned by whether they have a probability.
+    private final ProbabilityBuckets frontierCells; // Bucketed by probability.
+    private final RankedIntSet problessCells;
+    // Per bucket, (first constraint << 32) | cell for its cells, lowest first, and stale pairs.
+    private final LongHeap[] rankedFrontier = new LongHeap[ProbabilityBuckets.NUM_BUCKETS];
+
+    // Numbered cells whose neighborhood changed and that must be re-evaluated (flagged dirty).
+    private final IntQueue dirtyCells = new IntQueue();
+
+    // Numbered cells with all their mines marked (flagged satisfied), lowest index first. Their
+    // available neighbors are the safe cells; cells with none left are dropped when reached.
+    private final IntHeap satisfiedCells = new IntHeap();
+    // Safe cells found by the engines this iteration, in their order.
+    private final IntQueue deducedSafeCells = new IntQueue();
+
+    // The probability-less cell drawn this iteration, or -1 if there is none.
+    private int randomProblessCell = -1;
+
+    // Computes exact probabilities when there is no safe cell; null to use the heuristic only.
+    private ExactProbabilityEngine exactEngine;
+    private int[] frontier = new int[64];
+
+    // Finds deductions that combine several cells' constraints; null to skip them.
+    private LinearDeductionEngine linearEngine;
+    // Solves the small patterns around the frontier, with a cache; null to skip them.
+    private PatternDeductionEngine patternEngine;
+
+    // Scratch space for the (up to 8) neighbors of a cell, one per nesting level.
+    private final int[] neighbors = new int[8];
+    private final int[] innerNeighbors = new int[8];
+
+    private long maxMoves = Long.MAX_VALUE; // Pauses the solve after this many moves.
+
+    private GameStats stats; // Counts the moves made; may be null.
+    private SolverMetrics metrics; // Times the phases of the moves; may be null.
+
+    IncrementalSolver(Minesweeper board) {
+        this(board, MinesUtil.randomSeed());
+    }
+
+    IncrementalSolver(Minesweeper board, long seed) {
+        this(board, seed, new CellStateStore(board.getRows(), board.getCols()));
+    }
+
+    /**
+     * Creates a solver that keeps its state in 'cells', a store for the board's shape: either
+     * fresh, or resumed from a solve of this game that was paused no later than the board's
+     * position.
+     */
+    IncrementalSolver(Minesweeper board, long seed, CellStateStore cells) {
+        this.board = board;
+        this.rows = board.getRows();
+        this.cols = board.getCols();
+        this.random = new Random(seed);
+        if (cells.getRows() != rows || cells.getCols() != cols) {
+            throw new IllegalArgumentException("Cell state store of " + cells.getRows() + " x " +
+                    cells.getCols() + " cells for a grid of " + rows + " x " + cols);
+        }
+        this.cells = cells;
+        numCells = board.getNumCells();
+        frontierCells = cells.getFrontierCells();
+        problessCells = cells.getProblessCells();
+        for (int bucket = 0; bucket < rankedFrontier.length; bucket ++) {
+            rankedFrontier[bucket] = new LongHeap();
+        }
+    }
+
+    void setExactProbabilities(boolean exactProbabilities) {
+        exactEngine = exactProbabilities ? new ExactProbabilityEngine() : null;
+    }
+
+    void setLinearDeductions(boolean linearDeductions) {
+        linearEngine = linearDeductions ? new LinearDeductionEngine() : null;
+    }
+
+    void setPatternDeductions(boolean patternDeductions) {
+        patternEngine = patternDeductions ? new PatternDeductionEngine() : null;
+    }
+
+    /**
+     * Stops solve() after 'maxMoves' moves, between moves, so that it can be resumed from its
+     * CellStateStore.
+     */
+    void setMaxMoves(long maxMoves) {
+        this.maxMoves = maxMoves;
+    }
+
+    void setStats(GameStats stats) {
+        this.stats = stats;
+    }
+
+    void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void solve(BufferedReader br, boolean allowConsoleOutput) {
+        board.setTrackRevealedCells(true);
+        try {
+            long start = metrics != null ? metrics.start() : 0;
+            loadBoard();
+            if (metrics != null) metrics.stop(SolverMetrics.SNAPSHOT, start);
+            boolean done = false;
+            long numMoves = 0;
+            while (!done && numMoves < maxMoves) {
+                // Step 1: Re-evaluate the numbered cells around whatever changed.
+                processDirtyCells();
+
+                // Step 2: Pick a random probability-less cell and compute its probability.
+                start = metrics != null ? metrics.start() : 0;
+                int problessCellProb = randomProbabilityLessCell();
+                if (metrics != null) metrics.stop(SolverMetrics.GUESS, start);
+
+                // Step 2a-2c: Without a safe cell, the engines, in Solver's order. If the pattern
+                // or linear deductions only find mines, start over: they change the probabilities.
+                deducedSafeCells.clear();
+                int move = nextSafeCell();
+                if (move < 0 && patternEngine != null) {
+                    start = metrics != null ? metrics.start() : 0;
+                    boolean foundMines = patternDeductions();
+                    if (metrics != null) metrics.stop(SolverMetrics.DEDUCTION, start);
+                    if (foundMines && deducedSafeCells.isEmpty()) continue;
+                }
+                if (move < 0 && deducedSafeCells.isEmpty() && linearEngine != null) {
+                    start = metrics != null ? metrics.start() : 0;
+                    boolean foundMines = linearDeductions();
+                    if (metrics != null) metrics.stop(SolverMetrics.DEDUCTION, start);
+                    if (foundMines && deducedSafeCells.isEmpty()) continue;
+                }
+                int lowProbCell = -1;
+                int minMineProb = HIGH_MINE_PROB_INT;
+                int exactMove = -1;
+                if (move < 0 && deducedSafeCells.isEmpty()) {
+                    // Picked before the exact engine marks any mine, as Solver does.
+                    start = metrics != null ? metrics.start() : 0;
+                    int bucket = frontierCells.lowestBucket();
+                    if (bucket >= 0) {
+                        minMineProb = (int) (ProbabilityBuckets.probOf(bucket) * 1000.0);
+                        lowProbCell = lowProbCell(bucket);
+                    }
+                    if (metrics != null) metrics.stop(SolverMetrics.GUESS, start);
+                    if (exactEngine != null) {
+                        // This can also prove cells safe (or mines).
+                        start = metrics != null ? metrics.start() : 0;
+                        exactMove = exactProbabilityMove();
+                        if (metrics != null) metrics.stop(SolverMetrics.DEDUCTION, start);
+                    }
+                }
+
+                // Step 3: Make a move. Uncover a safe cell if we have one, otherwise guess.
+                boolean guess = move < 0 && deducedSafeCells.isEmpty();
+                if (guess) {
+                    if (exactMove >= 0) {
+                        move = exactMove;
+                    } else if (lowProbCell < 0 || problessCellProb < minMineProb) {
+                        if (MinesUtil.DBG) MinesUtil.println("Using probless cell, prob: " +
+                                problessCellProb + " minMineProb: " + minMineProb);
+                        move = randomProblessCell;
+                    } else {
+                        move = lowProbCell;
+                    }
+                } else if (move < 0) {
+                    move = deducedSafeCells.poll();
+                }
+                if (move < 0) {
+                    MinesUtil.println("Null move.");
+                    break;
+                }
+                int x = move / cols;
+                int y = move % cols;
+                if (allowConsoleOutput) {
+                    System.out.println("Decided a move, uncover: " + x + " , " + y);
+                }
+                start = metrics != null ? metrics.start() : 0;
+                boolean gameOver = board.exposeCell(x, y);
+                if (metrics != null) metrics.stop(SolverMetrics.EXPOSE, start);
+                numMoves ++;
+                if (stats != null) stats.recordMove(guess);
+                if (gameOver) {
+                    MinesUtil.println("Game ended.");
+                    if (allowConsoleOutput) {
+                        if (board.hasUserWon()) {
+                            System.out.println("Solver won !");
+                        } else {
+                            System.out.println("Solver lost !");
+                        }
+                    }
+                    done = true;
+                }
+                if (allowConsoleOutput) board.printGrid();
+
+                // Step 4: Take in the cells uncovered by the move.
+                start = metrics != null ? metrics.start() : 0;
+                for (int i = 0; i < board.getNumRevealedCells(); i ++) {
+                    reveal(board.getRevealedCell(i));
+                }
+                if (metrics != null) metrics.stop(SolverMetrics.SNAPSHOT, start);
+            }
+            cells.setClean(true);
+        } finally {
+            board.setTrackRevealedCells(false);
+        }
+    }
+
+    /**
+     * Reads the full board state once. Everything after this is incremental. A fresh store starts
+     * out with every cell covered, unmarked and probability-less; a resumed one is checked
+     * against the board and its heap side is rebuilt first, so only the cells uncovered since
+     * the solve was paused are revealed.
+     */
+    private void loadBoard() {
+        if (cells.isResumed()) resumeCells();
+        cells.setClean(false);
+        for (int index = 0; index < numCells; index ++) {
+            int value = board.getSnapshotValue(index / cols, index % cols);
+            if (value != COVERED && cells.getKnown(index) == COVERED) {
+                reveal(index);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds what a resumed store does not hold (the frontier buckets, the satisfied and dirty
+     * cells, the # of marked mines) from its flags. Throws IllegalArgumentException if the store
+     * knows a cell that the board has covered, or marked a mine that the board has uncovered.
+     */
+    private void resumeCells() {
+        for (int index = 0; index < numCells; index ++) {
+            int value = board.getSnapshotValue(index / cols, index % cols);
+            int known = cells.getKnown(index);
+            if ((known != COVERED && known != value) || (cells.isMine(index) && value != COVERED)) {
+                throw new IllegalArgumentException("Solver state does not match the board at: " +
+                        index / cols + " , " + index % cols);
+            }
+            if (cells.isMine(index)) numMarkedAsMines ++;
+            if (frontierCells.contains(index)) {
+                frontierCells.restore(index, cells.getProbCode(index));
+            }
+            if (cells.isSatisfied(index)) satisfiedCells.add(index);
+            if (cells.isDirty(index)) dirtyCells.add(index);
+        }
+        for (int bucket = 0; bucket < rankedFrontier.length; bucket ++) {
+            rerank(bucket);
+        }
+    }
+
+    /**
+     * Records that 'index' is uncovered, and marks it and its numbered neighbors for
+     * re-evaluation.
+     */
+    private void reveal(int index) {
+        int value = board.getSnapshotValue(index / cols, index % cols);
+        frontierCells.remove(index, cells.getProbCode(index));
+        cells.setKnown(index, value);
+        cells.setProbCode(index, 0);
+        problessCells.remove(index);
+        markDirty(index);
+        int numNeighbors = MinesUtil.neighborsOf(index, rows, cols, neighbors);
+        for (int i = 0; i < numNeighbors; i ++) {
+            markDirty(neighbors[i]);
+        }
+    }
+
+    private void markDirty(int index) {
+        if (cells.getKnown(index) > 0 && !cells.isDirty(index)) {
+            cells.setDirty(index, true);
+            dirtyCells.add(index);
+        }
+    }
+
+    private void processDirtyCells() {
+        long start = metrics != null ? metrics.start() : 0;
+        int numProcessed = 0;
+        while (!dirtyCells.isEmpty()) {
+            int index = dirtyCells.poll();
+            cells.setDirty(index, false);
+            processCell(index);
+            numProcessed ++;
+        }
+        if (metrics != null) {
+            metrics.stop(SolverMetrics.PROPAGATION, start);
+            metrics.countCells(numProcessed);
+        }
+    }
+
+    /**
+     * Processes a single numbered cell, as Solver analyzes each one: counts its covered neighbors
+     * and those marked as mines, and either queues it as satisfied (its other covered neighbors
+     * are safe), marks mines, or updates the probability it gives to its available neighbors.
+     */
+    private void processCell(int index) {
+        int numNeighborMines = cells.getKnown(index);
+        int numMarkedAsMines = 0;
+        int numAvailable = 0;
+        int numNeighbors = MinesUtil.neighborsOf(index, rows, cols, neighbors);
+        for (int i = 0; i < numNeighbors; i ++) {
+            int neighbor = neighbors[i];
+            if (cells.getKnown(neighbor) != COVERED) continue;
+            if (cells.isMine(neighbor)) {
+                numMarkedAsMines ++;
+            } else {
+                numAvailable ++;
+            }
+        }
+
+        int cellProb = 0;
+        if (numAvailable > 0) {
+            if (numNeighborMines == numMarkedAsMines) {
+                // All the mines are accounted for, the remaining cells are safe.
+                if (!cells.isSatisfied(index)) {
+                    cells.setSatisfied(index);
+                    satisfiedCells.add(index);
+                }
+            } else if (numNeighborMines == numMarkedAsMines + numAvailable) {
+                // All the available cells are mines.
+                for (int i = 0; i < numNeighbors; i ++) {
+                    int neighbor = neighbors[i];
+                    if (isAvailable(neighbor)) markAsMine(neighbor);
+                }
+            } else {
+                cellProb = CellStateStore.probCode(numNeighborMines - numMarkedAsMines,
+                        numAvailable);
+            }
+        }
+        if (cellProb != cells.getProbCode(index)) {
+            cells.setProbCode(index, cellProb);
+            for (int i = 0; i < numNeighbors; i ++) {
+                int neighbor = neighbors[i];
+                if (isAvailable(neighbor)) updateProbability(neighbor, index);
+            }
+        }
+    }
+
+    private boolean isAvailable(int index) {
+        return cells.isAvailable(index);
+    }
+
+    /**
+     * Marks a covered cell as a mine. This changes the counts of all its numbered neighbors.
+     */
+    private void markAsMine(int index) {
+        cells.setMine(index);
+        numMarkedAsMines ++;
+        if (cells.getProbCode(index) != 0) {
+            frontierCells.remove(index, cells.getProbCode(index));
+        } else {
+            problessCells.remove(index);
+        }
+        int numNeighbors = MinesUtil.neighborsOf(index, rows, cols, innerNeighbors);
+        for (int i = 0; i < numNeighbors; i ++) {
+            markDirty(innerNeighbors[i]);
+        }
+    }
+
+    /**
+     * Recomputes the probability of an available cell: the one given by its first numbered
+     * neighbor that gives one, after numbered neighbor 'changed' changed its own.
+     */
+    private void updateProbability(int index, int changed) {
+        int first = firstConstraint(index);
+        int cellProb = first < 0 ? 0 : cells.getProbCode(first);
+        int oldProb = cells.getProbCode(index);
+        // The first constraint can change with the same probability, but not if it is below
+        // 'changed'.
+        if (cellProb != 0 && (cellProb != oldProb || first >= changed)) {
+            rank(index, first, cellProb);
+        }
+        if (cellProb == oldProb) return; // A cell only changes buckets when its probability does.
+        cells.setProbCode(index, cellProb);
+        if (oldProb != 0) {
+            frontierCells.remove(index, oldProb);
+        } else {
+            problessCells.remove(index);
+        }
+        if (cellProb != 0) {
+            frontierCells.add(index, cellProb);
+        } else {
+            problessCells.add(index);
+        }
+    }
+
+    /**
+     * Returns the lowest index numbered neighbor of 'index' that gives it a probability, or -1.
+     */
+    private int firstConstraint(int index) {
+        int numNeighbors = MinesUtil.neighborsOf(index, rows, cols, innerNeighbors);
+        for (int i = 0; i < numNeighbors; i ++) {
+            int neighbor = innerNeighbors[i];
+            if (cells.getKnown(neighbor) > 0 && cells.getProbCode(neighbor) != 0) return neighbor;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the highest probability the numbered neighbors of 'index' give it, as Solver
+     * ends up with after all the constraints.
+     */
+    private double maxConstraintProb(int index) {
+        double prob = 0.0;
+        int numNeighbors = MinesUtil.neighborsOf(index, rows, cols, innerNeighbors);
+        for (int i = 0; i < numNeighbors; i ++) {
+            int neighbor = innerNeighbors[i];
+            if (cells.getKnown(neighbor) > 0) {
+                prob = Math.max(prob, CellStateStore.probOf(cells.getProbCode(neighbor)));
+            }
+        }
+        return prob;
+    }
+
+    /**
+     * Returns the first available neighbor of the lowest index satisfied cell, as Solver's
+     * analysis lists them first, or -1 if there is no proven safe cell.
+     */
+    private int nextSafeCell() {
+        while (!satisfiedCells.isEmpty()) {
+            int index = satisfiedCells.peek();
+            int numNeighbors = MinesUtil.neighborsOf(index, rows, cols, neighbors);
+            for (int i = 0; i < numNeighbors; i ++) {
+                if (isAvailable(neighbors[i])) return neighbors[i];
+            }
+            satisfiedCells.poll(); // It has nothing left to prove.
+        }
+        return -1;
+    }
+
+    /**
+     * Draws a cell uniformly at random among the probability-less ones, in index order as
+     * Solver does, into randomProblessCell. Returns the probability of such a cell in 1/1000
+     * units.
+     */
+    private int randomProbabilityLessCell() {
+        int numProbLessCells = problessCells.size();
+        randomProblessCell = -1;
+        if (numProbLessCells > 0) {
+            randomProblessCell = problessCells.get(random.nextInt(numProbLessCells));
+        }
+        return (int) (1000.0 / (double) numProbLessCells);
+    }
+
+    /**
+     * Returns Solver's pick among the cells of the lowest probability bucket (not empty): the
+     * lowest cell of the lowest first constraint.
+     */
+    private int lowProbCell(int bucket) {
+        LongHeap ranked = rankedFrontier[bucket];
+        while (true) {
+            long pair = ranked.peek();
+            int cell = (int) pair;
+            if (frontierCells.contains(cell) &&
+                    ProbabilityBuckets.bucketOf(cells.getProbCode(cell)) == bucket &&
+                    firstConstraint(cell) == (int) (pair >>> 32)) {
+                return cell;
+            }
+            ranked.poll(); // It left the bucket, or has another first constraint now.
+        }
+    }
+
+    /**
+     * Records that frontier cell 'index', with probability code 'code', has first constraint
+     * 'first'.
+     */
+    private void rank(int index, int first, int code) {
+        int bucket = ProbabilityBuckets.bucketOf(code);
+        // Drops the stale pairs once they outnumber the cells, so that a bucket's heap stays
+        // proportional to it.
+        if (rankedFrontier[bucket].size() > 2 * frontierCells.size(bucket) + 64) rerank(bucket);
+        rankedFrontier[bucket].add(((long) first << 32) | index);
+    }
+
+    private void rerank(int bucket) {
+        LongHeap ranked = rankedFrontier[bucket];
+        ranked.clear();
+        for (int i = 0; i < frontierCells.size(bucket); i ++) {
+            int cell = frontierCells.get(bucket, i);
+            ranked.add(((long) firstConstraint(cell) << 32) | cell);
+        }
+    }
+
+    /**
+     * Runs the exact probability engine on the frontier. Cells proven safe are added to
+     * 'deducedSafeCells' and cells proven to be mines are marked. Returns the cell least likely
+     * to be a mine otherwise (the random probability-less cell if the cells off the frontier are
+     * the least likely), or -1. Cells whose component was too large to enumerate keep their
+     * heuristic probability.
+     */
+    private int exactProbabilityMove() {
+        int numFrontier = copyFrontier();
+        exactEngine.compute(knownView, frontier, numFrontier,
+                board.getNumberOfMines() - numMarkedAsMines, numFrontier + problessCells.size());
+
+        int best = -1;
+        double bestProb = 1.0;
+        for (int i = 0; i < exactEngine.getNumCells(); i ++) {
+            int index = exactEngine.getCell(i);
+            double cellProb = exactEngine.getProbability(i);
+            if (cellProb == ExactProbabilityEngine.UNKNOWN_PROB) {
+                cellProb = maxConstraintProb(index);
+            } else if (cellProb < EXACT_EPSILON) {
+                deducedSafeCells.add(index);
+                continue;
+            } else if (cellProb > 1.0 - EXACT_EPSILON) {
+                markAsMine(index);
+                continue;
+            }
+            if (cellProb < bestProb) {
+                bestProb = cellProb;
+                best = index;
+            }
+        }
+        double interiorProb = exactEngine.getInteriorProbability();
+        if (randomProblessCell >= 0 && interiorProb != ExactProbabilityEngine.UNKNOWN_PROB &&
+                (best < 0 || interiorProb < bestProb)) {
+            best = randomProblessCell;
+        }
+        return best;
+    }
+
+    /**
+     * Runs the pattern deduction engine on the frontier, like linearDeductions().
+     */
+    private boolean patternDeductions() {
+        int numFrontier = copyFrontier();
+        patternEngine.compute(knownView, frontier, numFrontier);
+        for (int i = 0; i < patternEngine.getNumSafeCells(); i ++) {
+            deducedSafeCells.add(patternEngine.getSafeCell(i));
+        }
+        for (int i = 0; i < patternEngine.getNumMineCells(); i ++) {
+            markAsMine(patternEngine.getMineCell(i));
+        }
+        return patternEngine.getNumMineCells() > 0;
+    }
+
+    /**
+     * Runs the linear deduction engine on the frontier: cells proven safe are added to
+     * 'deducedSafeCells' and cells proven to be mines are marked (which marks their numbered
+     * neighbors dirty). Returns true if any mine was found.
+     */
+    private boolean linearDeductions() {
+        int numFrontier = copyFrontier();
+        linearEngine.compute(knownView, frontier, numFrontier);
+        for (int i = 0; i < linearEngine.getNumSafeCells(); i ++) {
+            deducedSafeCells.add(linearEngine.getSafeCell(i));
+        }
+        for (int i = 0; i < linearEngine.getNumMineCells(); i ++) {
+            markAsMine(linearEngine.getMineCell(i));
+        }
+        return linearEngine.getNumMineCells() > 0;
+    }
+
+    /**
+     * Copies the frontier cells into 'frontier', in index order, and returns how many there are.
+     * Without a proven safe cell (when the engines run), these are the covered, unmarked cells
+     * next to a numbered cell, as Solver collects them.
+     */
+    private int copyFrontier() {
+        int numFrontier = frontierCells.size();
+        if (frontier.length < numFrontier) {
+            frontier = new int[Math.max(numFrontier, 2 * frontier.length)];
+        }
+        frontierCells.copyTo(frontier);
+        Arrays.sort(frontier, 0, numFrontier);
+        return numFrontier;
+    }
+
+    // The solver's knowledge, as seen by the exact probability engine.
+    private final ExactProbabilityEngine.View knownView = new ExactProbabilityEngine.View() {
+        @Override
+        public int getRows() {
+            return rows;
+        }
+
+        @Override
+        public int getCols() {
+            return cols;
+        }
+
+        @Override
+        public int getValue(int index) {
+            return cells.getKnown(index);
+        }
+
+        @Override
+        public boolean isMarkedAsMine(int index) {
+            return cells.isMine(index);
+        }
+    };
+}
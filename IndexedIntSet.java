@@ -0,0 +1,59 @@
+import java.util.Arrays;
+
+/**
+ * A set of ints in [0, universeSize) with O(1) add, remove, contains and uniformly random
+ * selection. Elements are kept densely packed in an array, and a position table maps every value
+ * back to its slot.
+ */
+class IndexedIntSet {
+    private final int[] positions; // 1 + slot of each value in 'elements', or 0 if absent.
+    private int[] elements;
+    private int size;
+
+    IndexedIntSet(int universeSize) {
+        positions = new int[universeSize];
+        elements = new int[Math.min(Math.max(universeSize, 1), 1024)];
+    }
+
+    /**
+     * Adds 'value'. Returns false if it was already present.
+     */
+    boolean add(int value) {
+        if (positions[value] != 0) return false;
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, Math.min(2 * size, positions.length));
+        }
+        elements[size ++] = value;
+        positions[value] = size;
+        return true;
+    }
+
+    /**
+     * Removes 'value'. Returns false if it was not present.
+     */
+    boolean remove(int value) {
+        int position = positions[value];
+        if (position == 0) return false;
+        // Fill the hole with the last element.
+        int last = elements[-- size];
+        elements[position - 1] = last;
+        positions[last] = position;
+        positions[value] = 0;
+        return true;
+    }
+
+    boolean contains(int value) {
+        return positions[value] != 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the i-th element, 0 <= i < size(). The order changes as elements are removed.
+     */
+    int get(int i) {
+        return elements[i];
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.Arrays;
+
+/**
+ * A min-heap of ints, without the boxing of a PriorityQueue<Integer>.
+ */
+class IntHeap {
+    private int[] elements = new int[16];
+    private int size;
+
+    void add(int value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, 2 * size);
+        }
+        int i = size ++;
+        while (i > 0 && elements[(i - 1) >> 1] > value) {
+            elements[i] = elements[(i - 1) >> 1];
+            i = (i - 1) >> 1;
+        }
+        elements[i] = value;
+    }
+
+    /**
+     * Returns the smallest element. The heap must not be empty.
+     */
+    int peek() {
+        return elements[0];
+    }
+
+    /**
+     * Removes and returns the smallest element. The heap must not be empty.
+     */
+    int poll() {
+        int smallest = elements[0];
+        int last = elements[-- size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && elements[child + 1] < elements[child]) child ++;
+            if (elements[child] >= last) break;
+            elements[i] = elements[child];
+            i = child;
+        }
+        elements[i] = last;
+        return smallest;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
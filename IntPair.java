@@ -1,11 +0,0 @@
-
-class IntPair {
-    final int x;
-    final int y;
-    IntPair(int x, int y) {
-        this.x = x;
-        this.y = y;
-    }
-}
-
-
@@ -0,0 +1,66 @@
+import java.util.Arrays;
+
+/**
+ * A FIFO queue of ints backed by a growable ring buffer, so that queueing cell indices does not
+ * allocate a node (or box an Integer) per element.
+ */
+class IntQueue {
+    private int[] elements;
+    private int head; // Index of the first element.
+    private int size;
+
+    IntQueue() {
+        this(16);
+    }
+
+    IntQueue(int initialCapacity) {
+        elements = new int[Integer.highestOneBit(Math.max(initialCapacity, 2) - 1) << 1];
+    }
+
+    void add(int value) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        size ++;
+    }
+
+    /**
+     * Removes and returns the first element. The queue must not be empty.
+     */
+    int poll() {
+        int value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size --;
+        return value;
+    }
+
+    /**
+     * Moves all the elements, in order, to the end of 'other'.
+     */
+    void drainTo(IntQueue other) {
+        while (size > 0) {
+            other.add(poll());
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int[] grown = Arrays.copyOf(elements, 2 * elements.length);
+        // Move the wrapped-around prefix [0, head) behind the old end.
+        System.arraycopy(elements, 0, grown, elements.length, head);
+        elements = grown;
+    }
+}
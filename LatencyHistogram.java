@@ -0,0 +1,88 @@
+/**
+ * A histogram of non-negative long values (nanoseconds) with a bounded relative error, in the
+ * style of HdrHistogram: values are bucketed by magnitude (power of 2) and each magnitude is split
+ * linearly into 128 sub-buckets, so a recorded value is known to within 1/128 of itself. All the
+ * counts live in one fixed long[]; recording never allocates.
+ *
+ * Not thread safe: use one histogram per thread and add() them up at the end.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int HALF_SUB_BUCKET_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+    private static final long SUB_BUCKET_MASK = (1L << SUB_BUCKET_BITS) - 1;
+
+    // Magnitude 0 covers [0, 256) one value per bucket. Magnitude m > 0 covers
+    // [2^(m + 7), 2^(m + 8)) in 128 buckets of width 2^m.
+    private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 2) * HALF_SUB_BUCKET_COUNT];
+    private long totalCount;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    void record(long value) {
+        if (value < 0) value = 0;
+        counts[indexOf(value)] ++;
+        totalCount ++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Adds all the values recorded by 'other' to this histogram.
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i ++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return totalCount == 0 ? 0.0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Returns the value below or at which 'percentile' percent of the recorded values fall, to
+     * within the histogram's precision (the highest value of the bucket, capped by the max).
+     */
+    long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) return 0;
+        long rank = (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount);
+        rank = Math.max(rank, 1);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i ++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        int magnitude = 64 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK) - SUB_BUCKET_BITS;
+        return (magnitude << (SUB_BUCKET_BITS - 1)) + (int) (value >>> magnitude);
+    }
+
+    private static long highestValueOf(int index) {
+        int magnitude = Math.max(0, (index >> (SUB_BUCKET_BITS - 1)) - 1);
+        long subBucket = index - ((long) magnitude << (SUB_BUCKET_BITS - 1));
+        return ((subBucket + 1) << magnitude) - 1;
+    }
+}
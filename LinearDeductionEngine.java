@@ -0,0 +1,438 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Finds frontier cells that are certainly safe or certainly mines by combining the constraints of
+ * several numbered cells, which the single-cell rules of processCell cannot do (e.g. the 1-2-1
+ * pattern along a wall).
+ *
+ * Every numbered cell next to the frontier gives a linear equation "the sum of my covered
+ * neighbors is (count - marked mines)" over 0/1 variables. The equations are reduced by
+ * Gauss-Jordan elimination, with the frontier cells as columns in row-major order. A row's
+ * coefficients are kept as two bitsets (the +1 and the -1 columns), covering only the words
+ * between its first and last column. In row-major order the system is banded (a constraint only
+ * links cells of 3 adjacent grid rows), so a row operation touches a few words, and the rows that
+ * can contain a column are found by their first word instead of by scanning all of them.
+ * Eliminations that would produce a coefficient of +-2 are skipped, so every row stays a valid
+ * {-1, 0, 1} combination of the constraints (sound, but not a full rational elimination).
+ *
+ * A reduced row sum(P) - sum(N) = r decides all its cells when r hits one of its bounds: if
+ * r = |P| the P cells are mines and the N cells safe, if r = -|N| the N cells are mines and the P
+ * cells safe. Decided cells are substituted into the other rows, and the elimination repeats
+ * until nothing new is found.
+ */
+class LinearDeductionEngine {
+    private static final int UNDECIDED = 0;
+    private static final int SAFE = 1;
+    private static final int MINE = 2;
+
+    // Rounds of elimination + deduction before giving up on finding more.
+    private static final int MAX_ROUNDS = 8;
+
+    private static final Comparator<Row> BY_FIRST_WORD = new Comparator<Row>() {
+        @Override
+        public int compare(Row a, Row b) {
+            return Integer.compare(a.firstWord, b.firstWord);
+        }
+    };
+
+    private final int maxCells;
+
+    // Results of the last compute() call.
+    private int[] safeCells = new int[0];
+    private int numSafeCells;
+    private int[] mineCells = new int[0];
+    private int numMineCells;
+
+    // Scratch space.
+    private int[] cells = new int[0]; // The frontier, sorted: column i is cells[i].
+    private int[] state = new int[0]; // UNDECIDED, SAFE or MINE per column.
+    private Row[] rows = new Row[0];
+    private int numRows;
+    private int maxRowWords; // Widest row, in words: bounds how far before a column its rows start.
+    private final IntQueue pendingRows = new IntQueue();
+    private boolean[] isPending = new boolean[0];
+    private final int[] neighbors = new int[8];
+    private final int[] members = new int[8];
+
+    LinearDeductionEngine() {
+        this(1 << 16);
+    }
+
+    /**
+     * @param maxCells largest frontier (in cells) that is analyzed at all.
+     */
+    LinearDeductionEngine(int maxCells) {
+        this.maxCells = maxCells;
+    }
+
+    /**
+     * Looks for safe cells and mines among the frontier[0, numFrontier) cells (in any order):
+     * the covered cells not marked as mines next to a numbered cell.
+     */
+    void compute(ExactProbabilityEngine.View view, int[] frontier, int numFrontier) {
+        numSafeCells = 0;
+        numMineCells = 0;
+        if (numFrontier == 0 || numFrontier > maxCells) return;
+        if (cells.length < numFrontier) {
+            cells = new int[numFrontier];
+            state = new int[numFrontier];
+            safeCells = new int[numFrontier];
+            mineCells = new int[numFrontier];
+        }
+        System.arraycopy(frontier, 0, cells, 0, numFrontier);
+        Arrays.sort(cells, 0, numFrontier);
+        Arrays.fill(state, 0, numFrontier, UNDECIDED);
+        buildRows(view, numFrontier);
+
+        for (int round = 0; round < MAX_ROUNDS; round ++) {
+            eliminate(numFrontier);
+            if (!deduce()) break;
+        }
+        if (MinesUtil.DBG) MinesUtil.println("Linear deductions: frontier = " + numFrontier +
+                ", rows = " + numRows + ", safe = " + numSafeCells + ", mines = " + numMineCells);
+    }
+
+    int getNumSafeCells() {
+        return numSafeCells;
+    }
+
+    int getSafeCell(int i) {
+        return safeCells[i];
+    }
+
+    int getNumMineCells() {
+        return numMineCells;
+    }
+
+    int getMineCell(int i) {
+        return mineCells[i];
+    }
+
+    /**
+     * Builds one row per numbered cell next to the frontier. A numbered cell with a covered,
+     * unmarked neighbor off the frontier is left out, since that neighbor has no column.
+     */
+    private void buildRows(ExactProbabilityEngine.View view, int numFrontier) {
+        int gridRows = view.getRows(); // Of the board, not of the system.
+        int gridCols = view.getCols();
+        int[] numbered = new int[8 * numFrontier];
+        int numNumbered = 0;
+        for (int i = 0; i < numFrontier; i ++) {
+            int count = MinesUtil.neighborsOf(cells[i], gridRows, gridCols, neighbors);
+            for (int n = 0; n < count; n ++) {
+                if (view.getValue(neighbors[n]) > 0) numbered[numNumbered ++] = neighbors[n];
+            }
+        }
+        Arrays.sort(numbered, 0, numNumbered);
+        numRows = 0;
+        for (int i = 0; i < numNumbered; i ++) {
+            if (i > 0 && numbered[i] == numbered[i - 1]) continue;
+            int target = view.getValue(numbered[i]);
+            int numMembers = 0;
+            boolean complete = true;
+            int count = MinesUtil.neighborsOf(numbered[i], gridRows, gridCols, neighbors);
+            for (int n = 0; n < count; n ++) {
+                int neighbor = neighbors[n];
+                if (view.getValue(neighbor) != -1) continue;
+                if (view.isMarkedAsMine(neighbor)) {
+                    target --;
+                } else {
+                    int column = Arrays.binarySearch(cells, 0, numFrontier, neighbor);
+                    if (column < 0) {
+                        complete = false;
+                        break;
+                    }
+                    members[numMembers ++] = column;
+                }
+            }
+            if (!complete || numMembers == 0) continue;
+            if (numRows == rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(16, 2 * numRows));
+            }
+            rows[numRows ++] = new Row(target, members, numMembers);
+        }
+        if (isPending.length < numRows) {
+            isPending = new boolean[rows.length];
+        }
+    }
+
+    /**
+     * Reduces the rows (Gauss-Jordan). The forward pass keeps the rows in buckets by leading
+     * column: the first row of a bucket becomes the pivot of that column and is subtracted from
+     * the others, which then move to the bucket of their new leading column. The backward pass
+     * eliminates every pivot column from the earlier pivot rows. Leaves the rows sorted by first
+     * word, for firstRowFrom and decide.
+     */
+    private void eliminate(int numColumns) {
+        int[] bucketHead = new int[numColumns];
+        int[] nextInBucket = new int[numRows];
+        Arrays.fill(bucketHead, -1);
+        for (int i = 0; i < numRows; i ++) {
+            rows[i].trim(); // Substituted columns may have emptied its first words.
+            int lead = rows[i].leadingColumn();
+            if (lead >= 0) {
+                nextInBucket[i] = bucketHead[lead];
+                bucketHead[lead] = i;
+            }
+        }
+        Row[] pivots = new Row[Math.min(numRows, numColumns)];
+        int[] pivotColumns = new int[pivots.length];
+        int numPivots = 0;
+        maxRowWords = 1;
+        for (int column = 0; column < numColumns; column ++) {
+            int i = bucketHead[column];
+            if (i < 0) continue;
+            Row pivot = rows[i];
+            int pivotCoefficient = pivot.coefficient(column);
+            pivots[numPivots] = pivot;
+            pivotColumns[numPivots ++] = column;
+            maxRowWords = Math.max(maxRowWords, pivot.numWords);
+            for (i = nextInBucket[i]; i >= 0; ) {
+                int next = nextInBucket[i];
+                Row row = rows[i];
+                if (row.subtract(pivot, row.coefficient(column) * pivotCoefficient)) {
+                    int lead = row.leadingColumn();
+                    if (lead >= 0) {
+                        nextInBucket[i] = bucketHead[lead];
+                        bucketHead[lead] = i;
+                    }
+                } // else it keeps this column, and stays out of the pivots.
+                i = next;
+            }
+        }
+        for (int i = 0; i < numRows; i ++) {
+            maxRowWords = Math.max(maxRowWords, rows[i].numWords);
+        }
+
+        for (int k = numPivots - 1; k >= 0; k --) {
+            Row pivot = pivots[k];
+            int column = pivotColumns[k];
+            int pivotCoefficient = pivot.coefficient(column);
+            int minFirstWord = (column >>> 6) - maxRowWords + 1;
+            // Pivot rows are ordered by leading column, so their first words never increase.
+            for (int j = k - 1; j >= 0 && pivots[j].firstWord >= minFirstWord; j --) {
+                Row row = pivots[j];
+                int coefficient = row.coefficient(column);
+                if (coefficient != 0 && row.subtract(pivot, coefficient * pivotCoefficient)) {
+                    maxRowWords = Math.max(maxRowWords, row.numWords);
+                }
+            }
+        }
+        Arrays.sort(rows, 0, numRows, BY_FIRST_WORD);
+    }
+
+    /**
+     * Decides the cells of every row whose right hand side is at one of its bounds, substituting
+     * them into the rows that contain them and re-checking those, until no row decides anything
+     * new. Returns true if any cell was decided.
+     */
+    private boolean deduce() {
+        int numDecided = numSafeCells + numMineCells;
+        for (int i = 0; i < numRows; i ++) {
+            pendingRows.add(i);
+            isPending[i] = true;
+        }
+        while (!pendingRows.isEmpty()) {
+            int i = pendingRows.poll();
+            isPending[i] = false;
+            Row row = rows[i];
+            int numPositive = row.count(row.positive);
+            int numNegative = row.count(row.negative);
+            if (numPositive + numNegative == 0) continue;
+            if (row.rhs == numPositive) {
+                decideAll(row, row.positive, MINE);
+                decideAll(row, row.negative, SAFE);
+            } else if (row.rhs == -numNegative) {
+                decideAll(row, row.negative, MINE);
+                decideAll(row, row.positive, SAFE);
+            }
+        }
+        return numSafeCells + numMineCells > numDecided;
+    }
+
+    /**
+     * Decides every column set in 'bits' of 'row'. Substituting into the row as we go only
+     * clears columns that are then decided already.
+     */
+    private void decideAll(Row row, long[] bits, int value) {
+        for (int w = 0; w < row.numWords; w ++) {
+            long word = bits[w];
+            while (word != 0) {
+                int column = ((row.firstWord + w) << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                decide(column, value);
+            }
+        }
+    }
+
+    private void decide(int column, int value) {
+        if (state[column] != UNDECIDED) return;
+        state[column] = value;
+        if (value == SAFE) {
+            safeCells[numSafeCells ++] = cells[column];
+        } else {
+            mineCells[numMineCells ++] = cells[column];
+        }
+        // The rows sorted by first word that can contain the column.
+        int word = column >>> 6;
+        int from = firstRowFrom(word - maxRowWords + 1);
+        for (int i = from; i < numRows && rows[i].firstWord <= word; i ++) {
+            if (rows[i].substitute(column, value == MINE ? 1 : 0) && !isPending[i]) {
+                isPending[i] = true;
+                pendingRows.add(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first row whose first word is >= 'word'.
+     */
+    private int firstRowFrom(int word) {
+        int low = 0;
+        int high = numRows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rows[mid].firstWord < word) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * One equation sum(positive columns) - sum(negative columns) = rhs. The bitsets hold words
+     * [firstWord, firstWord + numWords) of the full column range; the first word is never empty
+     * unless the whole row is.
+     */
+    private static final class Row {
+        int firstWord;
+        int numWords;
+        long[] positive;
+        long[] negative;
+        int rhs;
+
+        Row(int rhs, int[] columns, int numColumns) {
+            int first = Integer.MAX_VALUE;
+            int last = 0;
+            for (int m = 0; m < numColumns; m ++) {
+                first = Math.min(first, columns[m] >>> 6);
+                last = Math.max(last, columns[m] >>> 6);
+            }
+            this.rhs = rhs;
+            firstWord = first;
+            numWords = last - first + 1;
+            positive = new long[numWords];
+            negative = new long[numWords];
+            for (int m = 0; m < numColumns; m ++) {
+                positive[(columns[m] >>> 6) - first] |= 1L << columns[m];
+            }
+        }
+
+        int coefficient(int column) {
+            int w = (column >>> 6) - firstWord;
+            if (w < 0 || w >= numWords) return 0;
+            long bit = 1L << column;
+            if ((positive[w] & bit) != 0) return 1;
+            if ((negative[w] & bit) != 0) return -1;
+            return 0;
+        }
+
+        /**
+         * Returns the lowest column with a non-zero coefficient, or -1 if there is none.
+         */
+        int leadingColumn() {
+            for (int w = 0; w < numWords; w ++) {
+                long bits = positive[w] | negative[w];
+                if (bits != 0) return ((firstWord + w) << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            return -1;
+        }
+
+        int count(long[] bits) {
+            int count = 0;
+            for (int w = 0; w < numWords; w ++) {
+                count += Long.bitCount(bits[w]);
+            }
+            return count;
+        }
+
+        /**
+         * Replaces this row by (this - sign * other), sign being +1 or -1, unless that would give
+         * some column a coefficient of +-2. Returns whether the row was replaced.
+         */
+        boolean subtract(Row other, int sign) {
+            long[] otherPositive = sign > 0 ? other.positive : other.negative;
+            long[] otherNegative = sign > 0 ? other.negative : other.positive;
+            for (int w = 0; w < other.numWords; w ++) {
+                int own = other.firstWord + w - firstWord;
+                if (own < 0 || own >= numWords) continue;
+                if ((positive[own] & otherNegative[w]) != 0 ||
+                        (negative[own] & otherPositive[w]) != 0) {
+                    return false;
+                }
+            }
+            widen(other.firstWord, other.firstWord + other.numWords);
+            for (int w = 0; w < other.numWords; w ++) {
+                int own = other.firstWord + w - firstWord;
+                long p = positive[own];
+                long n = negative[own];
+                long op = otherPositive[w];
+                long on = otherNegative[w];
+                positive[own] = (p & ~op) | (on & ~n);
+                negative[own] = (n & ~on) | (op & ~p);
+            }
+            rhs -= sign * other.rhs;
+            trim();
+            return true;
+        }
+
+        /**
+         * Removes a decided column, moving its value (0 or 1) to the right hand side. Returns
+         * false if the row does not contain the column. Does not trim, so the first word stays.
+         */
+        boolean substitute(int column, int value) {
+            int coefficient = coefficient(column);
+            if (coefficient == 0) return false;
+            int w = (column >>> 6) - firstWord;
+            positive[w] &= ~(1L << column);
+            negative[w] &= ~(1L << column);
+            rhs -= coefficient * value;
+            return true;
+        }
+
+        /**
+         * Makes the bitsets cover words [from, to) as well.
+         */
+        private void widen(int from, int to) {
+            int newFirst = Math.min(firstWord, from);
+            int newEnd = Math.max(firstWord + numWords, to);
+            if (newFirst == firstWord && newEnd == firstWord + numWords) return;
+            long[] newPositive = new long[newEnd - newFirst];
+            long[] newNegative = new long[newEnd - newFirst];
+            System.arraycopy(positive, 0, newPositive, firstWord - newFirst, numWords);
+            System.arraycopy(negative, 0, newNegative, firstWord - newFirst, numWords);
+            positive = newPositive;
+            negative = newNegative;
+            firstWord = newFirst;
+            numWords = newEnd - newFirst;
+        }
+
+        /**
+         * Drops empty words at both ends (keeping at least one word).
+         */
+        private void trim() {
+            int from = 0;
+            while (from < numWords - 1 && (positive[from] | negative[from]) == 0) from ++;
+            int to = numWords;
+            while (to > from + 1 && (positive[to - 1] | negative[to - 1]) == 0) to --;
+            if (from == 0 && to == numWords) return;
+            positive = Arrays.copyOfRange(positive, from, to);
+            negative = Arrays.copyOfRange(negative, from, to);
+            firstWord += from;
+            numWords = to - from;
+        }
+    }
+}
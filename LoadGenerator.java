@@ -0,0 +1,180 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures a GameServer under load: for each concurrency level, that many bot clients connect at
+ * once and play games (exposing random covered cells) for a fixed time, timing every request
+ * from send to reply. Prints one line per level with the throughput in moves per second and the
+ * tail latency.
+ */
+class LoadGenerator {
+    private final int port;
+    private final int rows;
+    private final int cols;
+    private final int numberOfMines;
+    private final long seed;
+
+    LoadGenerator(int port, int rows, int cols, int numberOfMines, long seed) {
+        this.port = port;
+        this.rows = rows;
+        this.cols = cols;
+        this.numberOfMines = numberOfMines;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs each level of 'concurrency' for 'seconds' seconds.
+     */
+    void run(int[] concurrency, int seconds) {
+        System.out.println("Load test: port = " + port + ", grid size = " + rows + " x " + cols +
+                ", number of mines = " + numberOfMines + ", " + seconds + " seconds per level");
+        System.out.println(String.format("%8s %12s %10s %10s %10s %10s %8s", "clients",
+                "moves/sec", "games", "p50 us", "p99 us", "p999 us", "errors"));
+        for (int level = 0; level < concurrency.length; level ++) {
+            runLevel(level, concurrency[level], seconds * 1_000_000_000L);
+        }
+    }
+
+    private void runLevel(int level, int numClients, long durationNanos) {
+        List<Client> clients = new ArrayList<Client>(numClients);
+        CountDownLatch connected = new CountDownLatch(numClients);
+        LongAdder errors = new LongAdder();
+        for (int i = 0; i < numClients; i ++) {
+            Client client = new Client(MinesUtil.mixSeed(seed, (long) level << 32 | i), connected,
+                    errors);
+            clients.add(client);
+        }
+        // Every client connects first, so the clock starts with all of them on the server.
+        List<Thread> threads = new ArrayList<Thread>(numClients);
+        for (Client client : clients) {
+            Thread thread = new Thread(() -> client.play(durationNanos), "client");
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        long startTime = System.nanoTime();
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long wallNanos = System.nanoTime() - startTime;
+        LatencyHistogram requestNanos = new LatencyHistogram();
+        long moves = 0;
+        long games = 0;
+        for (Client client : clients) {
+            requestNanos.add(client.requestNanos);
+            moves += client.moves;
+            games += client.games;
+        }
+        System.out.println(String.format("%8d %12.1f %10d %10.1f %10.1f %10.1f %8d", numClients,
+                moves * 1e9 / Math.max(wallNanos, 1), games,
+                requestNanos.getValueAtPercentile(50) / 1e3,
+                requestNanos.getValueAtPercentile(99) / 1e3,
+                requestNanos.getValueAtPercentile(99.9) / 1e3, errors.sum()));
+    }
+
+    /**
+     * One connection, playing games back to back. Keeps its own histogram and counts, read once
+     * its thread is done.
+     */
+    private class Client {
+        private final SplittableRandom random;
+        private final CountDownLatch connected;
+        private final LongAdder errors;
+        final LatencyHistogram requestNanos = new LatencyHistogram();
+        long moves;
+        long games;
+
+        // The covered cells of the current game, for picking a random one.
+        private final IndexedIntSet covered = new IndexedIntSet(rows * cols);
+
+        Client(long seed, CountDownLatch connected, LongAdder errors) {
+            this.random = new SplittableRandom(seed);
+            this.connected = connected;
+            this.errors = errors;
+        }
+
+        void play(long durationNanos) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                socket.setTcpNoDelay(true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                        StandardCharsets.US_ASCII));
+                connected.countDown();
+                connected.await();
+                long endTime = System.nanoTime() + durationNanos;
+                while (System.nanoTime() < endTime) {
+                    if (!playGame(in, out, endTime)) return;
+                }
+                request(in, out, GameServer.QUIT_CMD);
+            } catch (IOException e) {
+                errors.increment();
+                connected.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Plays a game until it ends or 'endTime' passes. Returns false after an error reply.
+         */
+        private boolean playGame(BufferedReader in, Writer out, long endTime) throws IOException {
+            String reply = request(in, out, GameServer.NEW_CMD + " " + rows + " " + cols + " " +
+                    numberOfMines + " " + random.nextLong(Long.MAX_VALUE));
+            if (!reply.startsWith(GameServer.OK)) return failed(reply);
+            games ++;
+            for (int i = 0; i < rows * cols; i ++) {
+                covered.add(i); // No-op for the cells still covered from the last game.
+            }
+            while (System.nanoTime() < endTime) {
+                int cell = covered.get(random.nextInt(covered.size()));
+                reply = request(in, out, GameServer.EXPOSE_CMD + " " + cell / cols + " " +
+                        cell % cols);
+                if (reply.startsWith(GameServer.ERROR)) return failed(reply);
+                moves ++;
+                if (!reply.startsWith(GameServer.PLAYING)) return true;
+                // Reply: PLAYING N INDEX:VALUE ...
+                String[] fields = reply.split(" ");
+                for (int i = 2; i < fields.length; i ++) {
+                    String field = fields[i];
+                    covered.remove(Integer.parseInt(field.substring(0, field.indexOf(':'))));
+                }
+            }
+            return true;
+        }
+
+        private String request(BufferedReader in, Writer out, String command) throws IOException {
+            long start = System.nanoTime();
+            out.write(command);
+            out.write('\n');
+            out.flush();
+            String reply = in.readLine();
+            requestNanos.record(System.nanoTime() - start);
+            if (reply == null) throw new IOException("Connection closed by the server");
+            return reply;
+        }
+
+        private boolean failed(String reply) {
+            if (MinesUtil.DBG) MinesUtil.println("Error reply: " + reply);
+            errors.increment();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Micro benchmarks for the game engine and solver hot paths, parameterized over board shape and
+ * mine density. Modeled on JMH's average-time mode: every configuration runs warmup iterations
+ * (thrown away, so the JIT has compiled the hot paths) and then measured iterations of a fixed
+ * duration, and reports the mean time per operation with its standard deviation across
+ * iterations, plus the bytes allocated per operation. Results are consumed into a sink so the
+ * JIT cannot drop the work.
+ *
+ *  java MinesBenchmark <generate|cascade|snapshot|sweep|solve|all> [--sizes 10,100,500,2000]
+ *          [--aspects 1,4,16] [--shapes 16x30,8x2000] [--densities 0.01,0.1,0.2] [--warmup 3]
+ *          [--iterations 5] [--millis 500] [solver flags]
+ *
+ * Every size N is run for each aspect ratio A (cols / rows) with about N * N cells, from N x N
+ * for A = 1 to N / 4 x 4N for A = 16, so that the shapes can be compared at equal cell counts.
+ * --shapes lists explicit rows x cols shapes instead.
+ *
+ * Solver flags (--incremental, --exact, --sweepSafe, --parallel) select the solver used by
+ * 'solve'; --parallel also applies to 'sweep'.
+ */
+class MinesBenchmark {
+    private static final String ALL_BENCH = "all";
+    private static final String SIZES_CMD = "--sizes";
+    private static final String ASPECTS_CMD = "--aspects";
+    private static final String SHAPES_CMD = "--shapes";
+    private static final String DENSITIES_CMD = "--densities";
+    private static final String WARMUP_CMD = "--warmup";
+    private static final String ITERATIONS_CMD = "--iterations";
+    private static final String MILLIS_CMD = "--millis";
+
+    // Grids of more cells than a square of this size are skipped for 'solve' with the
+    // full-rescan Solver, which takes hours there. Use --incremental for large grids.
+    private static final int MAX_FULL_RESCAN_SOLVE_SIZE = 200;
+
+    // Time of a single timed batch for benchmarks that can repeat on the same state.
+    private static final long MIN_BATCH_NANOS = 1_000_000L;
+
+    // Keeps the results of the benchmarked operations alive.
+    private static volatile long sink;
+
+    private static int[] sizes = {10, 100, 500, 2000};
+    private static double[] aspects = {1.0};
+    private static int[][] shapes = null; // {rows, cols} pairs; null to use sizes and aspects.
+    private static double[] densities = {0.01, 0.1, 0.2};
+    private static int warmupIterations = 3;
+    private static int iterations = 5;
+    private static long iterationNanos = 500_000_000L;
+    private static final SolverOptions solverOptions = new SolverOptions();
+
+    private static final com.sun.management.ThreadMXBean allocBean = allocationBean();
+
+    /**
+     * One benchmarked operation. setUp is not timed.
+     */
+    private abstract static class Benchmark {
+        final String name;
+        // Whether every invocation needs a fresh setUp (the operation consumes its state), or
+        // the operation can be repeated on one set up state.
+        final boolean singleShot;
+
+        Benchmark(String name, boolean singleShot) {
+            this.name = name;
+            this.singleShot = singleShot;
+        }
+
+        abstract void setUp(int rows, int cols, int numberOfMines, long seed);
+
+        abstract long invoke();
+    }
+
+    public static void main(String[] args) {
+        List<Benchmark> all = benchmarks();
+        if (args.length == 0 || (!args[0].equals(ALL_BENCH) && find(all, args[0]) == null)) {
+            StringBuilder names = new StringBuilder();
+            for (Benchmark bench : all) names.append(bench.name).append('|');
+            System.out.println("Usage: java MinesBenchmark <" + names + ALL_BENCH + "> [" +
+                    SIZES_CMD + " 10,100] [" + ASPECTS_CMD + " 1,4] [" + SHAPES_CMD +
+                    " 16x30] [" + DENSITIES_CMD + " 0.1,0.2] [" + WARMUP_CMD + " W] [" +
+                    ITERATIONS_CMD + " I] [" + MILLIS_CMD + " M] [solver flags]");
+            return;
+        }
+        parseArgs(args);
+        List<Benchmark> selected = new ArrayList<Benchmark>();
+        if (args[0].equals(ALL_BENCH)) {
+            selected.addAll(all);
+        } else {
+            selected.add(find(all, args[0]));
+        }
+
+        if (shapes == null) shapes = shapesOf(sizes, aspects);
+        System.out.println("Kernels: " + BoardKernels.INSTANCE.describe());
+        System.out.println(String.format("%-10s %11s %8s %9s %4s %16s   %14s %6s %12s",
+                "Benchmark", "shape", "density", "mines", "Cnt", "Score", "Error", "Units",
+                "B/op"));
+        for (Benchmark bench : selected) {
+            for (int[] shape : shapes) {
+                for (double density : densities) {
+                    long numCells = (long) shape[0] * shape[1];
+                    int numberOfMines = (int) Math.min(numCells - 1,
+                            Math.max(1L, Math.round(numCells * density)));
+                    if (bench.name.equals("solve") && !solverOptions.incremental &&
+                            numCells > MAX_FULL_RESCAN_SOLVE_SIZE * MAX_FULL_RESCAN_SOLVE_SIZE) {
+                        System.out.println(String.format(
+                                "%-10s %11s %8.3f %9d  skipped, use --incremental", bench.name,
+                                shapeName(shape), density, numberOfMines));
+                        continue;
+                    }
+                    measure(bench, shape[0], shape[1], density, numberOfMines);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a shape of about size * size cells with cols / rows close to 'aspect', for every
+     * size and aspect ratio.
+     */
+    private static int[][] shapesOf(int[] sizes, double[] aspects) {
+        int[][] shapes = new int[sizes.length * aspects.length][];
+        int count = 0;
+        for (int size : sizes) {
+            for (double aspect : aspects) {
+                int rows = (int) Math.max(1L, Math.round(size / Math.sqrt(aspect)));
+                int cols = (int) Math.max(1L, Math.round((double) size * size / rows));
+                shapes[count ++] = new int[] {rows, cols};
+            }
+        }
+        return shapes;
+    }
+
+    private static String shapeName(int[] shape) {
+        return shape[0] + "x" + shape[1];
+    }
+
+    private static List<Benchmark> benchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        // Board construction, including mine placement and neighbor counts.
+        benchmarks.add(new Benchmark("generate", false) {
+            int rows;
+            int cols;
+            int numberOfMines;
+            long seed;
+
+            void setUp(int rows, int cols, int numberOfMines, long seed) {
+                this.rows = rows;
+                this.cols = cols;
+                this.numberOfMines = numberOfMines;
+                this.seed = seed;
+            }
+
+            long invoke() {
+                return new Minesweeper(rows, cols, numberOfMines, seed ++).getNumCoveredCells();
+            }
+        });
+
+        // First click on the center of a fresh board. At low densities this uncovers most of the
+        // board in one cascade.
+        benchmarks.add(new Benchmark("cascade", true) {
+            Minesweeper board;
+
+            void setUp(int rows, int cols, int numberOfMines, long seed) {
+                board = new Minesweeper(rows, cols, numberOfMines, seed);
+            }
+
+            long invoke() {
+                board.exposeCell(board.getRows() / 2, board.getCols() / 2);
+                return board.getNumCoveredCells();
+            }
+        });
+
+        // Full snapshot copy of a board after its first click, as done on every Solver iteration.
+        benchmarks.add(new Benchmark("snapshot", false) {
+            Minesweeper board;
+            int[] snapshot;
+
+            void setUp(int rows, int cols, int numberOfMines, long seed) {
+                board = startedBoard(rows, cols, numberOfMines, seed);
+                snapshot = new int[rows * cols];
+            }
+
+            long invoke() {
+                board.updateUncoveredCellSnapshot(snapshot);
+                return snapshot[0];
+            }
+        });
+
+        // One Solver iteration without the move: snapshot refresh plus the cell analysis.
+        benchmarks.add(new Benchmark("sweep", false) {
+            Solver solver;
+
+            void setUp(int rows, int cols, int numberOfMines, long seed) {
+                solver = new Solver(startedBoard(rows, cols, numberOfMines, seed), seed);
+                solver.setParallel(solverOptions.parallel);
+            }
+
+            long invoke() {
+                return solver.analyze();
+            }
+        });
+
+        // A whole game, with the solver chosen by the solver flags.
+        benchmarks.add(new Benchmark("solve", true) {
+            Minesweeper board;
+            long seed;
+
+            void setUp(int rows, int cols, int numberOfMines, long seed) {
+                board = new Minesweeper(rows, cols, numberOfMines, seed);
+                this.seed = seed;
+            }
+
+            long invoke() {
+                solverOptions.solve(board, seed, null, false);
+                return board.hasUserWon() ? 1 : 0;
+            }
+        });
+        return benchmarks;
+    }
+
+    /**
+     * Returns a board on which the center cell has been exposed (retrying with other seeds until
+     * that is not a mine), i.e. a typical position after the first move.
+     */
+    private static Minesweeper startedBoard(int rows, int cols, int numberOfMines, long seed) {
+        Minesweeper board;
+        do {
+            board = new Minesweeper(rows, cols, numberOfMines, seed ++);
+            board.exposeCell(rows / 2, cols / 2);
+        } while (board.isGameOver() && !board.hasUserWon());
+        return board;
+    }
+
+    private static void measure(Benchmark bench, int rows, int cols, double density,
+            int numberOfMines) {
+        double[] nanosPerOp = new double[iterations];
+        long totalAllocated = 0;
+        long totalOps = 0;
+        long seed = 1;
+        for (int iteration = 0; iteration < warmupIterations + iterations; iteration ++) {
+            long timedNanos = 0;
+            long ops = 0;
+            long allocatedBefore = allocatedBytes();
+            long setUpAllocated = 0;
+            if (bench.singleShot) {
+                // Time every invocation on its own, excluding the set up.
+                while (timedNanos < iterationNanos || ops == 0) {
+                    long setUpStart = allocatedBytes();
+                    bench.setUp(rows, cols, numberOfMines, seed ++);
+                    setUpAllocated += allocatedBytes() - setUpStart;
+                    long startTime = System.nanoTime();
+                    sink += bench.invoke();
+                    timedNanos += System.nanoTime() - startTime;
+                    ops ++;
+                }
+            } else {
+                // Time batches of invocations, doubling the batch until it takes long enough
+                // for the timer resolution not to matter.
+                bench.setUp(rows, cols, numberOfMines, seed ++);
+                setUpAllocated = allocatedBytes() - allocatedBefore;
+                int batch = 1;
+                while (timedNanos < iterationNanos) {
+                    long startTime = System.nanoTime();
+                    for (int i = 0; i < batch; i ++) {
+                        sink += bench.invoke();
+                    }
+                    long elapsed = System.nanoTime() - startTime;
+                    timedNanos += elapsed;
+                    ops += batch;
+                    if (elapsed < MIN_BATCH_NANOS) batch *= 2;
+                }
+            }
+            long allocated = allocatedBytes() - allocatedBefore - setUpAllocated;
+            if (iteration < warmupIterations) continue;
+            nanosPerOp[iteration - warmupIterations] = (double) timedNanos / ops;
+            totalAllocated += allocated;
+            totalOps += ops;
+        }
+        double mean = 0.0;
+        for (double value : nanosPerOp) mean += value;
+        mean /= iterations;
+        double variance = 0.0;
+        for (double value : nanosPerOp) variance += (value - mean) * (value - mean);
+        double stddev = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0.0;
+        String allocation = allocBean == null ? "n/a" : Long.toString(totalAllocated / totalOps);
+        System.out.println(String.format("%-10s %11s %8.3f %9d %4d %16.1f +- %13.1f %6s %12s",
+                bench.name, rows + "x" + cols, density, numberOfMines, iterations, mean, stddev,
+                "ns/op", allocation));
+    }
+
+    private static Benchmark find(List<Benchmark> benchmarks, String name) {
+        for (Benchmark bench : benchmarks) {
+            if (bench.name.equals(name)) return bench;
+        }
+        return null;
+    }
+
+    private static void parseArgs(String[] args) {
+        int index = 1;
+        while (index < args.length) {
+            if (solverOptions.parseFlag(args[index])) {
+                index ++;
+                continue;
+            } else if (index >= args.length - 1) {
+                System.out.println("Mis-matched argument: " + args[index]);
+                break;
+            }
+            String value = args[index + 1];
+            if (args[index].equals(SIZES_CMD)) {
+                String[] parts = value.split(",");
+                sizes = new int[parts.length];
+                for (int i = 0; i < parts.length; i ++) sizes[i] = Integer.parseInt(parts[i]);
+            } else if (args[index].equals(ASPECTS_CMD)) {
+                String[] parts = value.split(",");
+                aspects = new double[parts.length];
+                for (int i = 0; i < parts.length; i ++) aspects[i] = Double.parseDouble(parts[i]);
+            } else if (args[index].equals(SHAPES_CMD)) {
+                String[] parts = value.split(",");
+                shapes = new int[parts.length][];
+                for (int i = 0; i < parts.length; i ++) {
+                    String[] dims = parts[i].split("x");
+                    shapes[i] = new int[] {Integer.parseInt(dims[0]), Integer.parseInt(dims[1])};
+                }
+            } else if (args[index].equals(DENSITIES_CMD)) {
+                String[] parts = value.split(",");
+                densities = new double[parts.length];
+                for (int i = 0; i < parts.length; i ++) densities[i] = Double.parseDouble(parts[i]);
+            } else if (args[index].equals(WARMUP_CMD)) {
+                warmupIterations = Integer.parseInt(value);
+            } else if (args[index].equals(ITERATIONS_CMD)) {
+                iterations = Math.max(1, Integer.parseInt(value));
+            } else if (args[index].equals(MILLIS_CMD)) {
+                iterationNanos = Long.parseLong(value) * 1_000_000L;
+            } else {
+                System.out.println("Unknown argument: " + args[index]);
+                index ++;
+                continue;
+            }
+            index += 2;
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return (com.sun.management.ThreadMXBean) threadBean;
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        if (allocBean == null) return 0;
+        return allocBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
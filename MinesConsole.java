@@ -1,6 +1,7 @@
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Class that processes console input.
@@ -8,87 +9,275 @@ import java.io.IOException;
 class MinesConsole {
     // Constants.
     private static final String GRID_SIZE_CMD = "--gridSize";
+    private static final String ROWS_CMD = "--rows";
+    private static final String COLS_CMD = "--cols";
     private static final String NUM_MINES_CMD = "--mines";
     private static final String NO_CONSOLE_CMD = "--noconsole";
+    private static final String SAFE_FIRST_CLICK_CMD = "--safeFirstClick";
+    private static final String NUM_GAMES_CMD = "--games";
+    private static final String NUM_THREADS_CMD = "--threads";
+    private static final String SEED_CMD = "--seed";
+    private static final String GAME_ID_CMD = "--game";
+    private static final String CORPUS_CMD = "--corpus";
+    private static final String SAVE_CORPUS_CMD = "--saveCorpus";
+    private static final String RESULTS_CMD = "--results";
+    private static final String STATE_FILE_CMD = "--stateFile";
+    private static final String LOAD_CMD = "--load";
+    private static final String SAVE_CMD = "--save";
+    private static final String TOURNAMENT_CMD = "--tournament";
+    private static final String METRICS_CMD = "--metrics";
+    private static final String SERVE_CMD = "--serve";
+    private static final String MAX_SESSIONS_CMD = "--maxSessions";
+    private static final String LOAD_TEST_CMD = "--loadTest";
+    private static final String CLIENTS_CMD = "--clients";
+    private static final String DURATION_CMD = "--duration";
+    private static final String VIEW_CMD = "--view";
+    private static final String CHUNKED_CMD = "--chunked";
+    private static final String DENSITY_CMD = "--density";
+    private static final String MAX_MOVES_CMD = "--maxMoves";
+    private static final String CHUNK_CACHE_CMD = "--chunkCache";
 
     private static final String EXPOSE_CELL_CMD = "e";
     private static final String QUIT_CELL_CMD = "quit";
     private static final String EXPOSE_ALL_CELL_CMD = "expose_all";
     private static final String SOLVE_CMD = "solve";
+    private static final String SAVE_GAME_CMD = "save";
+    private static final String LOAD_GAME_CMD = "load";
+    private static final String VIEW_GAME_CMD = "view";
 
     private static class GameParams {
-        final int gridSize;
-        final int numberOfMines;
-        final boolean useConsole; // Whether to use a console or not. 
-        GameParams(int gridSize, int numberOfMines, boolean useConsole) {
-            this.gridSize = gridSize;
-            this.numberOfMines = numberOfMines;
-            this.useConsole = useConsole;
+        int rows = 10; // --gridSize sets both rows and cols.
+        int cols = 10;
+        int numberOfMines = 10;
+        boolean useConsole = true; // Whether to use a console or not.
+        boolean firstClickSafe = false; // Whether the first exposed cell never holds a mine.
+        int numGames = 0; // > 0 runs that many games in-process (batch mode).
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        final SolverOptions solverOptions = new SolverOptions();
+        long seed = MinesUtil.randomSeed(); // Batch seed; a single game is game 'gameId' of it.
+        int gameId = 0;
+        String corpusFile = null; // Play the boards stored in this file.
+        String saveCorpusFile = null; // Store the boards of the batch in this file.
+        String resultsFile = null; // Stream a record per game of a batch to this file.
+        String loadFile = null; // Resume the single game saved in this file.
+        String saveFile = null; // Save the single game to this file when it ends.
+        MoveStrategy[] strategies = null; // Play every game of a batch with each of these.
+        int metricsPeriod = -1; // >= 0 collects SolverMetrics, printed every that many seconds.
+        int servePort = -1; // >= 0 hosts games on this port (GameServer).
+        int maxSessions = 1000; // Concurrent sessions of the server.
+        int loadTestPort = -1; // >= 0 load tests the server on this port (LoadGenerator).
+        int[] clients = {1, 10, 100, 1000}; // Concurrency levels of the load test.
+        int durationSeconds = 10; // Per concurrency level of the load test.
+        BoardRenderer renderer = null; // Draws the board in console mode; null for plain output.
+        boolean chunked = false; // Explore a lazily generated ChunkedBoard with ChunkedSolver.
+        double density = 0.15; // Mine density of the chunked board.
+        long maxMoves = 1_000_000; // Moves of the chunked solver.
+        int chunkCache = 4096; // Chunks of the chunked board kept in memory.
+
+        /**
+         * Returns the strategies a batch plays: the tournament's, or the one of the solver flags.
+         */
+        MoveStrategy[] batchStrategies() {
+            return strategies != null ? strategies : new MoveStrategy[] {solverOptions};
         }
     }
 
     public static void main(String[] args) {
         BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
         GameParams params = setupGame(args);
+        if (params.metricsPeriod < 0) {
+            play(br, params);
+            return;
+        }
+        SolverMetrics.enable();
+        ScheduledExecutorService reporter = params.metricsPeriod > 0 ?
+                SolverMetrics.startReporting(params.metricsPeriod) : null;
+        try {
+            play(br, params);
+        } finally {
+            if (reporter != null) reporter.shutdownNow();
+            System.out.print(SolverMetrics.summary());
+        }
+    }
+
+    private static void play(BufferedReader br, GameParams params) {
+        if (params.chunked) {
+            exploreChunked(params);
+            return;
+        }
+        if (params.servePort >= 0) {
+            serve(params);
+            return;
+        }
+        if (params.loadTestPort >= 0) {
+            new LoadGenerator(params.loadTestPort, params.rows, params.cols, params.numberOfMines,
+                    params.seed).run(params.clients, params.durationSeconds);
+            return;
+        }
+        if (params.corpusFile == null && params.loadFile == null &&
+                !Minesweeper.isValidShape(params.rows, params.cols)) {
+            System.out.println("Invalid board size: " + params.rows + " x " + params.cols);
+            return;
+        }
+        if (params.solverOptions.stateFile != null &&
+                (params.numGames > 0 || params.corpusFile != null)) {
+            // Concurrent games cannot share one state file.
+            System.out.println("Ignoring " + STATE_FILE_CMD + ", it only applies to single games.");
+            params.solverOptions.stateFile = null;
+        }
+        if (params.numGames > 0 || params.corpusFile != null) {
+            // Only a single game is paused, to be resumed from its saved game.
+            params.solverOptions.maxMoves = Long.MAX_VALUE;
+        }
+        // A loaded game resumes the solve paused in the state file, if there is one.
+        params.solverOptions.resumeStateFile = params.loadFile != null;
+        if ((params.loadFile != null || params.saveFile != null) &&
+                (params.numGames > 0 || params.corpusFile != null)) {
+            System.out.println("Ignoring " + LOAD_CMD + " / " + SAVE_CMD +
+                    ", they only apply to single games.");
+            params.loadFile = null;
+            params.saveFile = null;
+        }
+        if (params.corpusFile != null || params.saveCorpusFile != null) {
+            runCorpus(params);
+            return;
+        }
+        if (params.numGames > 0) {
+            // Many games inside this JVM.
+            BatchRunner runner = new BatchRunner(params.rows, params.cols, params.numberOfMines,
+                    params.numGames, params.numThreads, params.seed, params.batchStrategies());
+            runner.setFirstClickSafe(params.firstClickSafe);
+            runBatch(runner, params);
+            return;
+        }
+        long solverSeed = MinesUtil.solverSeed(params.seed, params.gameId);
+        Minesweeper board;
+        if (params.loadFile != null) {
+            board = loadGame(params.loadFile);
+            if (board == null) return;
+        } else {
+            board = new Minesweeper(params.rows, params.cols, params.numberOfMines,
+                    MinesUtil.boardSeed(params.seed, params.gameId));
+            board.setFirstClickSafe(params.firstClickSafe);
+        }
         if (!params.useConsole) {
             // Batch mode processing.
-            batchModeSolver(br, params.gridSize, params.numberOfMines);
+            batchModeSolver(br, board, solverSeed, params);
             return;
         } 
-        Minesweeper board = new Minesweeper(params.gridSize, params.numberOfMines);
-        System.out.println("Created board with gridsize = " + board.getGridSize() +
-                " and number of mines = " + board.getNumberOfMines());
+        if (params.renderer != null) board.setRenderer(params.renderer);
+        if (params.loadFile == null) {
+            System.out.println("Created board of " + board.getRows() + " x " + board.getCols() +
+                    " and number of mines = " + board.getNumberOfMines() + " (seed = " +
+                    params.seed + ", game = " + params.gameId + ")");
+        }
         board.printGrid();
         System.out.println();
         System.out.println();
-        processConsoleInput(br, board);
+        processConsoleInput(br, board, params, solverSeed);
     }
 
-    private static void processConsoleInput(BufferedReader br, Minesweeper board) {
+    private static void processConsoleInput(BufferedReader br, Minesweeper board,
+            GameParams params, long solverSeed) {
+        SolverOptions solverOptions = params.solverOptions;
         boolean done = false;
         while (!done) {
             System.out.println();
             System.out.println("e X Y  -- exposes cell at row X column Y");
             System.out.println("quit   -- quits the console, ending the game.");
             System.out.println("solve -- run the algorithmic solver on the current game.");
+            System.out.println("save FILE -- saves the current game to FILE.");
+            System.out.println("load FILE -- replaces the current game with the one saved in " +
+                    "FILE.");
+            if (params.renderer != null) {
+                System.out.println("view X Y -- scrolls the view to start at row X column Y.");
+            }
             System.out.print("\n \n>> ");
             try {
                 String command = br.readLine();
                 String[] commandArgs = command.split(" ");
                 if (commandArgs[0].equals(EXPOSE_CELL_CMD)) {
-                    if (exposeCell(commandArgs, board)) {
+                    done = exposeCell(commandArgs, board);
+                    // Drawn first, as a viewport frame erases what is below the board.
+                    board.printGrid();
+                    if (done) {
                         System.out.println("Game ended.");
                         if (board.hasUserWon()) {
                             System.out.println("You WON !");
                         } else {
                             System.out.println("You LOST !");
                         }
-                        done = true;
                     }
-                    board.printGrid();
                 } else if (commandArgs[0].equals(QUIT_CELL_CMD)) {
                     done = true;
                     System.out.println("Quitting..");
                 } else if (commandArgs[0].equals(EXPOSE_ALL_CELL_CMD)) {
                     board.exposeAllCells();
-                    System.out.println("Exposing all cells. Game Over.");
                     board.printGrid();
+                    System.out.println("Exposing all cells. Game Over.");
                 } else if (commandArgs[0].equals(SOLVE_CMD)) {
                     System.out.println("Running solver.");
-                    Solver solver = new Solver(board);
-                    solver.solve(br, true);
+                    solverOptions.solve(board, solverSeed, br, true);
                     if (board.hasUserWon()) {
                         System.out.println("Solver won!");
-                    } else {
+                    } else if (board.isGameOver()) {
                         System.out.println("Solver lost!");
+                    } else {
+                        System.out.println("Solver stopped.");
                     }
                     done = true;
+                } else if (commandArgs[0].equals(SAVE_GAME_CMD) && commandArgs.length > 1) {
+                    saveGame(board, commandArgs[1]);
+                } else if (commandArgs[0].equals(LOAD_GAME_CMD) && commandArgs.length > 1) {
+                    Minesweeper loaded = loadGame(commandArgs[1]);
+                    if (loaded != null) {
+                        board = loaded;
+                        if (params.renderer != null) board.setRenderer(params.renderer);
+                        board.printGrid();
+                    }
+                } else if (commandArgs[0].equals(VIEW_GAME_CMD) && params.renderer != null &&
+                        commandArgs.length > 2) {
+                    try {
+                        params.renderer.scrollTo(Integer.parseInt(commandArgs[1]),
+                                Integer.parseInt(commandArgs[2]));
+                        board.printGrid();
+                    } catch (NumberFormatException e) {
+                        System.out.println("Could not parse: " + commandArgs[1] + " and " +
+                                commandArgs[2]);
+                    }
                 }
             } catch (IOException e) {
                 done = true;
                 System.out.println("Error processing input. Aborting.");
             }
         }
+        if (params.saveFile != null) saveGame(board, params.saveFile);
+    }
+
+    /**
+     * Loads a saved game, or returns null (after printing why) if it cannot be read.
+     */
+    private static Minesweeper loadGame(String fileName) {
+        try {
+            long start = System.currentTimeMillis();
+            Minesweeper board = SavedGame.load(fileName);
+            System.out.println("Loaded game of " + board.getRows() + " x " + board.getCols() +
+                    " and number of mines = " + board.getNumberOfMines() + " from " + fileName +
+                    " in " + (System.currentTimeMillis() - start) + " ms");
+            return board;
+        } catch (IOException e) {
+            System.out.println("Error loading game: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void saveGame(Minesweeper board, String fileName) {
+        try {
+            SavedGame.save(board, fileName);
+            System.out.println("Saved game to " + fileName);
+        } catch (IOException e) {
+            System.out.println("Error saving game: " + e.getMessage());
+        }
     }
 
     private static boolean exposeCell(String[] args, Minesweeper board) {
@@ -99,7 +288,11 @@ class MinesConsole {
         try {
             int x = Integer.parseInt(args[1]);
             int y = Integer.parseInt(args[2]);
-            return board.exposeCell(x, y); 
+            if (!board.isValid(x, y)) {
+                System.out.println("No cell at: " + x + " , " + y);
+                return false;
+            }
+            return board.exposeCell(x, y);
         } catch (NumberFormatException e) {
             System.out.println("Could not parse: " + args[1] + " and " + args[2]);
             return false;
@@ -107,55 +300,284 @@ class MinesConsole {
     }
 
     // Runs the solver in a batch mode to compute aggregate stats.
-    private static void batchModeSolver(BufferedReader br, int gridSize, int numberOfMines) {
+    private static void batchModeSolver(BufferedReader br, Minesweeper board, long solverSeed,
+            GameParams params) {
         long totalTime = 0;
-        System.out.println("Grid size = " + gridSize + " number of mines: " + numberOfMines);
-        Minesweeper board = new Minesweeper(gridSize, numberOfMines);
-        Solver solver = new Solver(board);
+        System.out.println("Grid size = " + board.getRows() + " x " + board.getCols() +
+                " number of mines: " + board.getNumberOfMines() + " seed: " + params.seed +
+                " game: " + params.gameId);
         long prevTime = System.currentTimeMillis();
-        solver.solve(br, false);
+        try {
+            params.solverOptions.solve(board, solverSeed, br, false);
+        } finally {
+            // Also keeps the position if the solver dies, e.g. out of memory on a huge board.
+            if (params.saveFile != null) saveGame(board, params.saveFile);
+        }
         totalTime = System.currentTimeMillis() - prevTime;
         String result;
         if (board.hasUserWon()) {
             result = "WON";
-        } else {
+        } else if (board.isGameOver()) {
             result = "LOST";
+        } else {
+            result = "STOPPED"; // Paused by --maxMoves.
         }
         System.out.println("Result=" + result + ", time=" + totalTime);
+        if (PatternCache.totalLookups() > 0) System.out.println(PatternCache.summary());
+    }
+
+    /**
+     * Lets ChunkedSolver explore a chunked board of --rows x --cols cells (any size up to
+     * 2^31 - 1 each) from its center.
+     */
+    private static void exploreChunked(GameParams params) {
+        ChunkedBoard board;
+        try {
+            board = new ChunkedBoard(params.rows, params.cols, params.density,
+                    MinesUtil.boardSeed(params.seed, params.gameId), params.chunkCache);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        System.out.println("Chunked board of " + board.getRows() + " x " + board.getCols() +
+                ", mine density = " + board.getDensity() + " (seed = " + params.seed +
+                ", game = " + params.gameId + "), chunk cache = " + params.chunkCache +
+                " chunks, max moves = " + params.maxMoves);
+        ChunkedSolver solver = new ChunkedSolver(board,
+                MinesUtil.solverSeed(params.seed, params.gameId), params.maxMoves);
+        long start = System.currentTimeMillis();
+        solver.solve();
+        long time = System.currentTimeMillis() - start;
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println("Result=" + (board.isGameOver() ? "LOST" : "STOPPED") + ", time=" +
+                time + ", moves=" + solver.getMoves() + ", guesses=" + solver.getGuesses() +
+                ", cells uncovered=" + board.getNumUncovered());
+        System.out.println("Chunks generated=" + board.getChunksGenerated() + ", resident=" +
+                board.getResidentChunks() + ", set aside=" + board.getSpilledChunks() +
+                ", evictions=" + board.getEvictions() + ", dropped checks=" +
+                solver.getDropped() + ", heap used MB=" +
+                (runtime.totalMemory() - runtime.freeMemory()) / (1 << 20));
+    }
+
+    /**
+     * Hosts games on --serve PORT until the process is stopped, printing the totals on exit.
+     */
+    private static void serve(GameParams params) {
+        if (params.solverOptions.stateFile != null) {
+            System.out.println("Ignoring " + STATE_FILE_CMD + ", it only applies to single games.");
+            params.solverOptions.stateFile = null;
+        }
+        GameServer server = new GameServer(params.servePort, params.maxSessions,
+                params.solverOptions, params.firstClickSafe);
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(() -> System.out.println(server.summary())));
+        try {
+            server.run();
+        } catch (IOException e) {
+            System.out.println("Error serving games: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Generates (--saveCorpus) and / or plays (--corpus) a fixed set of boards. Without
+     * --corpus, the saved boards are the ones of the batch with the given seed.
+     */
+    private static void runCorpus(GameParams params) {
+        try {
+            BoardCorpus corpus;
+            if (params.corpusFile != null) {
+                corpus = BoardCorpus.load(params.corpusFile);
+                System.out.println("Loaded " + corpus.size() + " boards from " + params.corpusFile);
+            } else {
+                corpus = BoardCorpus.generate(params.rows, params.cols, params.numberOfMines,
+                        Math.max(params.numGames, 1), params.seed);
+            }
+            if (params.saveCorpusFile != null) {
+                corpus.save(params.saveCorpusFile);
+                System.out.println("Saved " + corpus.size() + " boards to " +
+                        params.saveCorpusFile);
+            }
+            if (params.corpusFile != null) {
+                BatchRunner runner = new BatchRunner(corpus, params.numThreads, params.seed,
+                        params.batchStrategies());
+                runner.setFirstClickSafe(params.firstClickSafe);
+                runBatch(runner, params);
+            }
+        } catch (IOException e) {
+            System.out.println("Error processing board corpus: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a batch, streaming its results to --results if given.
+     */
+    private static void runBatch(BatchRunner runner, GameParams params) {
+        if (params.resultsFile == null) {
+            runner.run();
+            return;
+        }
+        try (ResultWriter writer = new ResultWriter(params.resultsFile, runner.isTournament())) {
+            runner.setResultWriter(writer);
+            runner.run();
+        } catch (IOException e) {
+            System.out.println("Error writing results: " + e.getMessage());
+        }
     }
 
     private static GameParams setupGame(String[] args) {
-        int gridSize = 10;
-        int numberOfMines = 10;
-        boolean useConsole = true;
+        GameParams params = new GameParams();
         if (args == null || args.length == 0 || args.length < 2) {
-            return new GameParams(gridSize, numberOfMines, true);
+            return params;
         }
         int index = 0;
         while (index < args.length) {
             if (args[index].equals(NO_CONSOLE_CMD)) {
                 System.out.println("No console mode.");
-                useConsole = false;
+                params.useConsole = false;
                 index += 1; 
                 continue;
+            } else if (args[index].equals(SAFE_FIRST_CLICK_CMD)) {
+                System.out.println("First click is safe.");
+                params.firstClickSafe = true;
+                index += 1;
+                continue;
+            } else if (params.solverOptions.parseFlag(args[index])) {
+                index += 1;
+                continue;
             } else if (index >= args.length - 1) {
                 System.out.println("Mis-matched argument: " + args[index]);
                 break;
             } 
             if (args[index].equals(GRID_SIZE_CMD)) {
-                gridSize = Integer.parseInt(args[index + 1]);
-                System.out.println("Setting gridSize to: " + gridSize);
+                params.rows = Integer.parseInt(args[index + 1]);
+                params.cols = params.rows;
+                System.out.println("Setting gridSize to: " + params.rows);
+                index += 2;
+            } else if (args[index].equals(ROWS_CMD)) {
+                params.rows = Integer.parseInt(args[index + 1]);
+                System.out.println("Setting rows to: " + params.rows);
+                index += 2;
+            } else if (args[index].equals(COLS_CMD)) {
+                params.cols = Integer.parseInt(args[index + 1]);
+                System.out.println("Setting cols to: " + params.cols);
                 index += 2;
             } else if (args[index].equals(NUM_MINES_CMD)) {
-                numberOfMines = Integer.parseInt(args[index + 1]);
-                System.out.println("Setting numberOfMines to: " + numberOfMines);
+                params.numberOfMines = Integer.parseInt(args[index + 1]);
+                System.out.println("Setting numberOfMines to: " + params.numberOfMines);
+                index += 2;
+            } else if (args[index].equals(NUM_GAMES_CMD)) {
+                params.numGames = Integer.parseInt(args[index + 1]);
+                System.out.println("Setting number of games to: " + params.numGames);
+                index += 2;
+            } else if (args[index].equals(SEED_CMD)) {
+                params.seed = Long.parseLong(args[index + 1]);
+                System.out.println("Setting seed to: " + params.seed);
+                index += 2;
+            } else if (args[index].equals(GAME_ID_CMD)) {
+                params.gameId = Integer.parseInt(args[index + 1]);
+                System.out.println("Setting game to: " + params.gameId);
+                index += 2;
+            } else if (args[index].equals(CORPUS_CMD)) {
+                params.corpusFile = args[index + 1];
+                index += 2;
+            } else if (args[index].equals(SAVE_CORPUS_CMD)) {
+                params.saveCorpusFile = args[index + 1];
+                index += 2;
+            } else if (args[index].equals(RESULTS_CMD)) {
+                params.resultsFile = args[index + 1];
+                index += 2;
+            } else if (args[index].equals(LOAD_CMD)) {
+                params.loadFile = args[index + 1];
+                index += 2;
+            } else if (args[index].equals(SAVE_CMD)) {
+                params.saveFile = args[index + 1];
+                index += 2;
+            } else if (args[index].equals(STATE_FILE_CMD)) {
+                params.solverOptions.stateFile = args[index + 1];
+                System.out.println("Mapping the solver state to: " +
+                        params.solverOptions.stateFile);
+                index += 2;
+            } else if (args[index].equals(TOURNAMENT_CMD)) {
+                String[] specs = args[index + 1].split(",");
+                MoveStrategy[] strategies = new MoveStrategy[specs.length];
+                try {
+                    for (int i = 0; i < specs.length; i ++) {
+                        strategies[i] = SolverOptions.fromSpec(specs[i]);
+                    }
+                    params.strategies = strategies;
+                    System.out.println("Playing a tournament of " + specs.length + " strategies.");
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
+                }
+                index += 2;
+            } else if (args[index].equals(METRICS_CMD)) {
+                params.metricsPeriod = Math.max(0, Integer.parseInt(args[index + 1]));
+                System.out.println("Collecting solver metrics, reported every " +
+                        params.metricsPeriod + " seconds (0: at the end only).");
+                index += 2;
+            } else if (args[index].equals(SERVE_CMD)) {
+                params.servePort = Integer.parseInt(args[index + 1]);
+                System.out.println("Serving games on port: " + params.servePort);
+                index += 2;
+            } else if (args[index].equals(MAX_SESSIONS_CMD)) {
+                params.maxSessions = Math.max(1, Integer.parseInt(args[index + 1]));
+                System.out.println("Setting max sessions to: " + params.maxSessions);
+                index += 2;
+            } else if (args[index].equals(LOAD_TEST_CMD)) {
+                params.loadTestPort = Integer.parseInt(args[index + 1]);
+                System.out.println("Load testing the server on port: " + params.loadTestPort);
+                index += 2;
+            } else if (args[index].equals(CLIENTS_CMD)) {
+                String[] levels = args[index + 1].split(",");
+                params.clients = new int[levels.length];
+                for (int i = 0; i < levels.length; i ++) {
+                    params.clients[i] = Math.max(1, Integer.parseInt(levels[i]));
+                }
+                System.out.println("Setting load test clients to: " + args[index + 1]);
+                index += 2;
+            } else if (args[index].equals(DURATION_CMD)) {
+                params.durationSeconds = Math.max(1, Integer.parseInt(args[index + 1]));
+                System.out.println("Setting load test duration to: " + params.durationSeconds +
+                        " seconds per level");
+                index += 2;
+            } else if (args[index].equals(CHUNKED_CMD)) {
+                System.out.println("Exploring a chunked board.");
+                params.chunked = true;
+                index += 1;
+                continue;
+            } else if (args[index].equals(DENSITY_CMD)) {
+                params.density = Double.parseDouble(args[index + 1]);
+                System.out.println("Setting mine density to: " + params.density);
+                index += 2;
+            } else if (args[index].equals(MAX_MOVES_CMD)) {
+                params.maxMoves = Long.parseLong(args[index + 1]);
+                params.solverOptions.maxMoves = params.maxMoves;
+                System.out.println("Setting max moves to: " + params.maxMoves);
+                index += 2;
+            } else if (args[index].equals(CHUNK_CACHE_CMD)) {
+                params.chunkCache = Integer.parseInt(args[index + 1]);
+                System.out.println("Setting chunk cache to: " + params.chunkCache + " chunks");
+                index += 2;
+            } else if (args[index].equals(VIEW_CMD)) {
+                String[] size = args[index + 1].split("x");
+                try {
+                    params.renderer = new BoardRenderer(System.out, true,
+                            Integer.parseInt(size[0]), Integer.parseInt(size[size.length - 1]));
+                    System.out.println("Showing a view of up to " + args[index + 1] + " cells.");
+                } catch (NumberFormatException e) {
+                    System.out.println("Could not parse view size: " + args[index + 1]);
+                }
+                index += 2;
+            } else if (args[index].equals(NUM_THREADS_CMD)) {
+                params.numThreads = Math.max(1, Integer.parseInt(args[index + 1]));
+                System.out.println("Setting number of threads to: " + params.numThreads);
                 index += 2;
             } else {
                 System.out.println("Unknown argument: " + args[index]);
                 index ++;
             }
         }
-        return new GameParams(gridSize, numberOfMines, useConsole);
+        return params;
     }
 
 }
@@ -1,29 +1,88 @@
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Collection of utility functions.
  */
 class MinesUtil {
-    private static final boolean DBG = false;
-
-    static void computeNeighborList(int x, int y, int gridSize, List<IntPair> neighborList) {
-        if (!isValid(x, y, gridSize)) return;
-        addValidNodeToList(x - 1, y - 1, gridSize, neighborList);
-        addValidNodeToList(x - 1, y, gridSize, neighborList);
-        addValidNodeToList(x - 1, y + 1, gridSize, neighborList);
-        addValidNodeToList(x, y - 1, gridSize, neighborList);
-        addValidNodeToList(x, y + 1, gridSize, neighborList);
-        addValidNodeToList(x + 1, y - 1, gridSize, neighborList);
-        addValidNodeToList(x + 1, y, gridSize, neighborList);
-        addValidNodeToList(x + 1, y + 1, gridSize, neighborList);
+    // Callers that build a debug message out of several parts check DBG first, so that the
+    // message is not built (and allocated) when debug output is off.
+    static final boolean DBG = false;
+
+    // Distinguishes seeds handed out within the same clock tick.
+    private static final AtomicLong seedUniquifier = new AtomicLong(0x2545F4914F6CDD1DL);
+
+    /**
+     * Stores the valid neighbors of cell 'index' (row-major, x * cols + y) of a board of
+     * rows x cols cells into 'out', which needs room for 8, and returns how many there are.
+     * Neighbors are listed row by row, left to right. This is the neighbor iteration used
+     * throughout: callers keep one scratch array per nesting level, so walking neighbors never
+     * allocates.
+     */
+    static int neighborsOf(int index, int rows, int cols, int[] out) {
+        int x = index / cols;
+        int y = index - x * cols;
+        if (x > 0 && y > 0 && x < rows - 1 && y < cols - 1) {
+            // Interior cell: all 8 neighbors exist, at fixed offsets.
+            int above = index - cols;
+            int below = index + cols;
+            out[0] = above - 1;
+            out[1] = above;
+            out[2] = above + 1;
+            out[3] = index - 1;
+            out[4] = index + 1;
+            out[5] = below - 1;
+            out[6] = below;
+            out[7] = below + 1;
+            return 8;
+        }
+        int fromRow = Math.max(x - 1, 0);
+        int toRow = Math.min(x + 1, rows - 1);
+        int fromCol = Math.max(y - 1, 0);
+        int toCol = Math.min(y + 1, cols - 1);
+        int count = 0;
+        for (int i = fromRow; i <= toRow; i ++) {
+            int rowStart = i * cols;
+            for (int j = fromCol; j <= toCol; j ++) {
+                int neighbor = rowStart + j;
+                if (neighbor != index) out[count ++] = neighbor;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a fresh seed for a game or solver. Unlike System.currentTimeMillis(), two calls in
+     * the same millisecond (e.g. from parallel workers) return different seeds.
+     */
+    static long randomSeed() {
+        return mixSeed(seedUniquifier.getAndIncrement(), System.nanoTime());
+    }
+
+    /**
+     * Derives the n-th seed of a stream rooted at 'base' (SplitMix64 finalizer). Nearby inputs
+     * give uncorrelated outputs, so game i of a batch can use mixSeed(batchSeed, i).
+     */
+    static long mixSeed(long base, long n) {
+        long z = base + (n + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
-    static boolean isValid(int x, int y, int gridSize) {
-        return  !(x < 0 || x >= gridSize || y < 0 || y >= gridSize);
+    /**
+     * Returns the seed of the board of game 'gameId' in the batch (or corpus) seeded by
+     * 'batchSeed'. A single game played with --seed S is game 0 of batch S, so any game of a
+     * batch can be replayed on its own.
+     */
+    static long boardSeed(long batchSeed, int gameId) {
+        return mixSeed(batchSeed, 2L * gameId);
     }
 
-    static void addValidNodeToList(int x, int y, int gridSize, List<IntPair> neighborList) {
-        if (isValid(x, y, gridSize)) neighborList.add(new IntPair(x, y));
+    /**
+     * Returns the seed of the solver of game 'gameId' in the batch seeded by 'batchSeed'.
+     */
+    static long solverSeed(long batchSeed, int gameId) {
+        return mixSeed(batchSeed, 2L * gameId + 1);
     }
 
     static void println(String message) {
@@ -1,56 +1,278 @@
-import java.util.LinkedList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
- * Minesweeper: This class implements the Minesweeper game (not a solver).
+ * Minesweeper: This class implements the Minesweeper game (not a solver), on a board of
+ * rows x cols cells.
  */
 class Minesweeper {
     // Constants.
-    private static final String ROW_GUTTER = "    ";
-    private static final String FIRST_ROW_GUTTER = ROW_GUTTER + " ";
-    private static final String INTER_CELL_SPACING = "  ";
+    // Below 1 mine per this many cells, neighbor counts are updated per mine instead of being
+    // computed in a pass over the whole grid.
+    private static final int SPARSE_MINES_RATIO = 16;
 
     // Instance variables.
-    private final int gridSize;
+    private final int rows;
+    private final int cols;
     private final int numberOfMines;
-    private final Cell[][] grid;
-    private final Random random;
+    // One byte per cell in row-major order (see Cell for the encoding); cell (x, y) (row x,
+    // column y) is at grid[x * cols + y].
+    private final byte[] grid;
+    private final long seed; // The seed the mines were generated from.
     private boolean isGameOver; // Whether the game is over.
 
     // did the user win (AI or human). Value valid only when isGameOver== true;
     private boolean userWon;
     private int numCoveredCells;
 
-    Minesweeper(int gridSize, int numberOfMines) {
-        this.gridSize = gridSize;
+    // If set, a mine under the first exposed cell is moved elsewhere before the cell is exposed.
+    private boolean firstClickSafe;
+    private boolean anyCellExposed;
+
+    // Ring buffer of pending zero cells of a cascade in exposeCellInternal. Its capacity is a
+    // power of 2, sized for the perimeter of a large region up front and grown on demand.
+    private int[] exposeQueue;
+    private final int[] neighbors = new int[8]; // Scratch space for MinesUtil.neighborsOf.
+
+    // Cells (row-major indices) uncovered by the last call to exposeCell. Only recorded when
+    // 'trackRevealedCells' is set, so that solvers can update their state incrementally.
+    private boolean trackRevealedCells;
+    private int[] revealedCells = new int[16];
+    private int numRevealedCells;
+
+    private BoardRenderer renderer; // Draws printGrid's frames; created on first use if not set.
+
+    // Change tracking for snapshots. 'version' goes up by one per call that can uncover cells,
+    // and each tile of 2^TILE_SHIFT consecutive cells (by index) records the version of its last
+    // change, as does each group of 2^GROUP_SHIFT tiles, so that unchanged stretches of the board
+    // are skipped a group at a time.
+    static final int TILE_SHIFT = 6;
+    private static final int GROUP_SHIFT = 6;
+    private long version;
+    private final long[] tileVersions;
+    private final long[] groupVersions;
+
+    Minesweeper(int rows, int cols, int numberOfMines) {
+        this(rows, cols, numberOfMines, MinesUtil.randomSeed());
+    }
+
+    /**
+     * Creates a board whose mine layout is fully determined by 'seed'.
+     */
+    Minesweeper(int rows, int cols, int numberOfMines, long seed) {
+        this(rows, cols, numberOfMines, seed, null);
+    }
+
+    /**
+     * Creates a board with the given mine layout: bit (i % 64) of mineBits[i / 64] is set if the
+     * cell with row-major index i holds a mine. 'seed' is only recorded, see getSeed().
+     */
+    Minesweeper(int rows, int cols, long[] mineBits, long seed) {
+        this(rows, cols, countMines(mineBits), seed, mineBits);
+    }
+
+    private Minesweeper(int rows, int cols, int numberOfMines, long seed, long[] mineBits) {
+        if (!isValidShape(rows, cols)) {
+            throw new IllegalArgumentException("Invalid board size: " + rows + " x " + cols);
+        }
+        if (numberOfMines < 0 || numberOfMines > rows * cols) {
+            throw new IllegalArgumentException("Invalid number of mines: " + numberOfMines);
+        }
+        this.rows = rows;
+        this.cols = cols;
         this.numberOfMines = numberOfMines;
-        grid = new Cell[gridSize][gridSize];
-        random = new Random(System.currentTimeMillis()); // Use a random enuf seed.
+        this.seed = seed;
+        grid = new byte[rows * cols];
+        tileVersions = new long[(grid.length + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT];
+        groupVersions = new long[(tileVersions.length + (1 << GROUP_SHIFT) - 1) >> GROUP_SHIFT];
         isGameOver = false;
         userWon = false;
-        generateGrid();
-        numCoveredCells = gridSize * gridSize;
+        if (mineBits == null) {
+            generateGrid(new SplittableRandom(seed));
+        } else {
+            placeMines(mineBits);
+        }
+        numCoveredCells = rows * cols;
+        exposeQueue = new int[Integer.highestOneBit(8 * Math.max(rows, cols) + 63) << 1];
     }
 
-    int getGridSize() {
-        return gridSize;
+    /**
+     * Whether a board can have 'rows' x 'cols' cells: at least one, and few enough for arrays
+     * indexed by cell.
+     */
+    static boolean isValidShape(int rows, int cols) {
+        return rows > 0 && cols > 0 && (long) rows * cols <= Integer.MAX_VALUE - 8;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getCols() {
+        return cols;
+    }
+
+    int getNumCells() {
+        return grid.length;
     }
 
     int getNumberOfMines() {
         return numberOfMines;
     }
 
+    /**
+     * Returns the seed of the board: the one its mines were generated from, or the one recorded
+     * with its mine layout.
+     */
+    long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the mine layout in the format taken by Minesweeper(int, int, long[], long). Meant
+     * for storing boards, not for solvers.
+     */
+    long[] getMineBitset() {
+        return bitsetOf(Cell.MINE);
+    }
+
+    /**
+     * Returns which cells are still covered, in the same format as getMineBitset.
+     */
+    long[] getCoveredBitset() {
+        return bitsetOf(Cell.COVERED);
+    }
+
+    /**
+     * Packs bit 'flag' of every cell into a bitset, a word at a time without branches.
+     */
+    private long[] bitsetOf(byte flag) {
+        int shift = Integer.numberOfTrailingZeros(flag);
+        long[] bits = new long[(grid.length + 63) / 64];
+        for (int word = 0; word < bits.length; word ++) {
+            int base = word << 6;
+            int end = Math.min(64, grid.length - base);
+            long packed = 0;
+            for (int bit = 0; bit < end; bit ++) {
+                packed |= (long) ((grid[base + bit] >> shift) & 1) << bit;
+            }
+            bits[word] = packed;
+        }
+        return bits;
+    }
+
+    /**
+     * Uncovers every cell whose bit is clear in 'coveredBits' (the format of getCoveredBitset),
+     * and derives from them whether the game is over, so that a saved game resumes where it was.
+     * Meant for a board that was just created.
+     */
+    void restoreCovered(long[] coveredBits) {
+        version ++;
+        boolean mineUncovered = false;
+        numCoveredCells = grid.length;
+        for (int word = 0; word < coveredBits.length; word ++) {
+            long uncovered = ~coveredBits[word];
+            if (word == coveredBits.length - 1 && (grid.length & 63) != 0) {
+                uncovered &= (1L << grid.length) - 1; // Bits past the last cell.
+            }
+            while (uncovered != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(uncovered);
+                uncovered &= uncovered - 1;
+                setUncovered(index);
+                // As in exposeCell, an uncovered mine still counts as covered.
+                if (Cell.isMine(grid[index])) {
+                    mineUncovered = true;
+                } else {
+                    numCoveredCells --;
+                }
+            }
+        }
+        anyCellExposed = numCoveredCells < grid.length || mineUncovered;
+        if (mineUncovered) {
+            isGameOver = true;
+            userWon = false;
+        } else if (anyCellExposed && numCoveredCells == numberOfMines) {
+            isGameOver = true;
+            userWon = true;
+        }
+    }
+
+    private static int countMines(long[] mineBits) {
+        int count = 0;
+        for (long word : mineBits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
     /**
      * Exposes the cell given by (x, y). Returns true if the game has ended.
      */
     boolean exposeCell(int x, int y) {
-        Cell cell = grid[x][y];
-        if (cell.isMine()) {
-            cell.setUncovered();
-            return checkGameOver(cell);
+        int index = index(x, y);
+        numRevealedCells = 0;
+        version ++;
+        if (!anyCellExposed) {
+            anyCellExposed = true;
+            if (firstClickSafe && Cell.isMine(grid[index])) moveMine(index);
         }
-        exposeCellInternal(cell);
-        return checkGameOver(cell);
+        if (Cell.isMine(grid[index])) {
+            if (Cell.isCovered(grid[index])) recordRevealed(index);
+            setUncovered(index);
+            return checkGameOver(index);
+        }
+        exposeCellInternal(index);
+        return checkGameOver(index);
+    }
+
+    /**
+     * Makes the first exposeCell call never hit a mine: a mine there is moved to a random free
+     * cell (updating only the counts around both cells). Has no effect once a cell was exposed.
+     */
+    void setFirstClickSafe(boolean firstClickSafe) {
+        this.firstClickSafe = firstClickSafe;
+    }
+
+    boolean isFirstClickSafe() {
+        return firstClickSafe;
+    }
+
+    /**
+     * Enables (or disables) recording of the cells uncovered by each exposeCell call.
+     */
+    void setTrackRevealedCells(boolean trackRevealedCells) {
+        this.trackRevealedCells = trackRevealedCells;
+        numRevealedCells = 0;
+    }
+
+    /**
+     * Returns the # of cells uncovered by the last exposeCell call (when tracking is enabled).
+     */
+    int getNumRevealedCells() {
+        return numRevealedCells;
+    }
+
+    /**
+     * Returns the i-th cell uncovered by the last exposeCell call, as the row-major index
+     * x * cols + y.
+     */
+    int getRevealedCell(int i) {
+        return revealedCells[i];
+    }
+
+    /**
+     * Returns what a player can see at (x, y): the # of neighboring mines if the cell is
+     * uncovered, -1 if it is covered. Same values as updateUncoveredCellSnapshot.
+     */
+    int getSnapshotValue(int x, int y) {
+        return Cell.snapshotValue(grid[index(x, y)]);
+    }
+
+    /**
+     * Returns the Cell encoding of (x, y), for renderers. Players see getSnapshotValue instead.
+     */
+    byte getCell(int x, int y) {
+        return grid[index(x, y)];
     }
 
     boolean isGameOver() {
@@ -61,27 +283,98 @@ class Minesweeper {
         return userWon;
     }
 
-    void updateUncoveredCellSnapshot(int[][] snapshot) {
-        for (int i = 0; i < gridSize; i ++) {
-            for (int j = 0; j < gridSize; j ++) {
-                if (!grid[i][j].isCovered()) {
-                    snapshot[i][j] = grid[i][j].getNumNeighboringMines();
-                } else {
-                    snapshot[i][j] = -1; // Covered cell.
-                }
+    /**
+     * Returns the board's version: it changes whenever cells may have been uncovered.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the first tile in [tile, toTile) changed after version 'sinceVersion', or toTile
+     * if there is none. Tile t holds the cells with index in [t << TILE_SHIFT, (t + 1) <<
+     * TILE_SHIFT). Every tile counts as changed after version -1.
+     */
+    int nextChangedTile(long sinceVersion, int tile, int toTile) {
+        while (tile < toTile) {
+            int group = tile >> GROUP_SHIFT;
+            if (groupVersions[group] <= sinceVersion) {
+                tile = (group + 1) << GROUP_SHIFT;
+            } else if (tileVersions[tile] > sinceVersion) {
+                return tile;
+            } else {
+                tile ++;
             }
         }
+        return toTile;
+    }
+
+    /**
+     * Brings the cells [from, to) of 'snapshot', as of version 'sinceVersion' (-1 for a snapshot
+     * never filled), up to date, copying only the tiles changed since. Returns the version it
+     * is now up to date with.
+     */
+    long syncSnapshot(int[] snapshot, long sinceVersion, int from, int to) {
+        int lastTile = (to + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT;
+        int tile = nextChangedTile(sinceVersion, from >> TILE_SHIFT, lastTile);
+        while (tile < lastTile) {
+            updateUncoveredCellSnapshot(snapshot, Math.max(from, tile << TILE_SHIFT),
+                    Math.min(to, (tile + 1) << TILE_SHIFT));
+            tile = nextChangedTile(sinceVersion, tile + 1, lastTile);
+        }
+        return version;
+    }
+
+    /**
+     * Copies what a player can see into 'snapshot', indexed by row-major cell index: the # of
+     * neighboring mines of uncovered cells, -1 for covered ones.
+     */
+    void updateUncoveredCellSnapshot(int[] snapshot) {
+        updateUncoveredCellSnapshot(snapshot, 0, grid.length);
+    }
+
+    /**
+     * Same as above, for the cells with index in [from, to) only.
+     */
+    void updateUncoveredCellSnapshot(int[] snapshot, int from, int to) {
+        BoardKernels.INSTANCE.snapshotValues(grid, snapshot, from, to);
+    }
+
+    int getNumCoveredCells() {
+        return numCoveredCells;
     }
 
     boolean isCovered(int x, int y) {
-        return grid[x][y].isCovered();
+        return Cell.isCovered(grid[index(x, y)]);
     }
 
-    private boolean checkGameOver(Cell cell) {
+    /**
+     * Returns the row-major index of (x, y). Throws ArrayIndexOutOfBoundsException, as the
+     * former 2D grid did, if there is no such cell: a y past the row would reach another cell.
+     */
+    private int index(int x, int y) {
+        if (!isValid(x, y)) {
+            throw new ArrayIndexOutOfBoundsException("No cell at " + x + " , " + y + " on a " +
+                    rows + " x " + cols + " board");
+        }
+        return x * cols + y;
+    }
+
+    private void setUncovered(int index) {
+        grid[index] &= ~Cell.COVERED;
+        markChanged(index);
+    }
+
+    private void markChanged(int index) {
+        tileVersions[index >> TILE_SHIFT] = version;
+        groupVersions[index >> (TILE_SHIFT + GROUP_SHIFT)] = version;
+    }
+
+    private boolean checkGameOver(int index) {
         if (isGameOver) {
             return true;
         }
-        if (cell.isMine()) {
+        if (Cell.isMine(grid[index])) {
             isGameOver = true;
             userWon = false;
             return isGameOver;
@@ -93,118 +386,208 @@ class Minesweeper {
         return isGameOver;
     }
 
-    private void exposeCellInternal(Cell cell) {
-        LinkedList<Cell> list = new LinkedList<Cell>();
-        list.add(cell);
-        while (!list.isEmpty()) {
-            Cell target = list.removeFirst();
-            if (target.isCovered() && !target.isMine()) {
-                target.setUncovered();
-                numCoveredCells --;
-                if (target.getNumNeighboringMines() == 0) {
-                    int x = target.getX();
-                    int y = target.getY();
-                    // add neighbors.
-                    addToExposeList(list, x - 1, y);
-                    addToExposeList(list, x - 1, y - 1);
-                    addToExposeList(list, x - 1, y + 1);
-                    addToExposeList(list, x, y + 1);
-                    addToExposeList(list, x, y - 1);
-                    addToExposeList(list, x + 1, y - 1);
-                    addToExposeList(list, x + 1, y);
-                    addToExposeList(list, x + 1, y + 1);
+    /**
+     * Uncovers the (non-mine) cell at 'index' and, if it has no neighboring mines, the whole
+     * connected region of such cells plus its border. Cells are uncovered as they are enqueued, so
+     * every cell is visited once. The region is walked breadth first, which keeps the pending queue
+     * proportional to the perimeter of the region rather than its area, and the queue is reused
+     * across calls, so a cascade does not allocate.
+     */
+    private void exposeCellInternal(int index) {
+        if (!uncover(index)) return;
+        if (Cell.getNumNeighboringMines(grid[index]) != 0) return;
+        int[] queue = exposeQueue;
+        int mask = queue.length - 1;
+        int head = 0;
+        int tail = 0;
+        queue[tail ++] = index;
+        while (head != tail) {
+            int target = queue[head ++ & mask];
+            int numNeighbors = MinesUtil.neighborsOf(target, rows, cols, neighbors);
+            for (int n = 0; n < numNeighbors; n ++) {
+                int neighbor = neighbors[n];
+                // Neighbors of a zero cell are never mines, so they can all be uncovered.
+                if (uncover(neighbor) && Cell.getNumNeighboringMines(grid[neighbor]) == 0) {
+                    if (tail - head == queue.length) {
+                        queue = growExposeQueue(head, tail);
+                        mask = queue.length - 1;
+                        tail -= head;
+                        head = 0;
+                    }
+                    queue[tail ++ & mask] = neighbor;
                 }
             }
         }
     }
 
-    private void addToExposeList(LinkedList<Cell> list, int x, int y) {
-        if (!isValid(x, y)) return;
-        list.addFirst(grid[x][y]);
+    /**
+     * Doubles the (full) expose queue, moving its entries [head, tail) to the front.
+     */
+    private int[] growExposeQueue(int head, int tail) {
+        int[] queue = exposeQueue;
+        int mask = queue.length - 1;
+        int[] grown = new int[2 * queue.length];
+        for (int i = head; i != tail; i ++) {
+            grown[i - head] = queue[i & mask];
+        }
+        exposeQueue = grown;
+        return grown;
     }
 
     /**
-     * Generates a grid by placing the mines randomly.
+     * Uncovers a covered, non-mine cell. Returns false if there was nothing to uncover.
      */
-    private void generateGrid() {
-        for (int i = 0; i < gridSize; i ++) {
-            for (int j = 0; j < gridSize; j ++) {
-                grid[i][j] = new Cell(i, j);
-            }
+    private boolean uncover(int index) {
+        byte cell = grid[index];
+        if (!Cell.isCovered(cell) || Cell.isMine(cell)) return false;
+        grid[index] = (byte) (cell & ~Cell.COVERED);
+        markChanged(index);
+        numCoveredCells --;
+        recordRevealed(index);
+        return true;
+    }
+
+    private void recordRevealed(int index) {
+        if (!trackRevealedCells) return;
+        if (numRevealedCells == revealedCells.length) {
+            revealedCells = Arrays.copyOf(revealedCells, 2 * numRevealedCells);
         }
+        revealedCells[numRevealedCells ++] = index;
+    }
 
-        // Generate mines first.
-        int numGenerated = 0;
-        while (numGenerated < numberOfMines) {
-            int x = random.nextInt(gridSize);
-            int y = random.nextInt(gridSize);
-            if (!grid[x][y].isMine()) {
-                grid[x][y].setMine();
-                updateNeighbors(x, y);
-                numGenerated ++;
-            } // else retry in the next iteration.
+    /**
+     * Places exactly numberOfMines mines uniformly at random with Floyd's sampling: one random
+     * number per mine and no retries, whatever the density. The grid itself is the sample set.
+     */
+    private void generateGrid(SplittableRandom random) {
+        Arrays.fill(grid, Cell.INITIAL);
+        boolean sparse = isSparse();
+        for (int j = grid.length - numberOfMines; j < grid.length; j ++) {
+            int index = random.nextInt(j + 1);
+            if (Cell.isMine(grid[index])) index = j; // j was not a candidate so far.
+            grid[index] |= Cell.MINE;
+            if (sparse) updateNeighbors(index, 1);
         }
+        if (!sparse) computeNeighborCounts();
     }
 
-    void printGrid() {
-        StringBuilder strBuilder = new StringBuilder(3 * gridSize);
-        strBuilder.append(FIRST_ROW_GUTTER);  // space for the column numbers.
-        for (int j = 0; j < gridSize; j ++) {
-            addToStringBuilder(strBuilder, j);
-        }
-        System.out.println(strBuilder.toString());
-        System.out.println();
-        for (int i = 0; i < gridSize; i ++) {
-            StringBuilder row = new StringBuilder(3 * gridSize);
-            row.append(i);
-            row.append(ROW_GUTTER);
-            for (int j = 0; j < gridSize; j ++) {
-                row.append(grid[i][j].printableChar());
-                row.append("   ");
+    /**
+     * Places the mines of a stored layout.
+     */
+    private void placeMines(long[] mineBits) {
+        Arrays.fill(grid, Cell.INITIAL);
+        boolean sparse = isSparse();
+        for (int word = 0; word < mineBits.length; word ++) {
+            long bits = mineBits[word];
+            while (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                grid[index] |= Cell.MINE;
+                if (sparse) updateNeighbors(index, 1);
             }
-            System.out.println(row.toString());
         }
+        if (!sparse) computeNeighborCounts();
     }
 
-    void exposeAllCells() {
-        for (int i = 0; i < gridSize; i ++) {
-            for (int j = 0; j < gridSize; j ++) {
-                grid[i][j].setUncovered();
+    /**
+     * Whether there are few enough mines for updating the counts around each mine to be
+     * cheaper than computeNeighborCounts.
+     */
+    private boolean isSparse() {
+        return numberOfMines < grid.length / SPARSE_MINES_RATIO;
+    }
+
+    /**
+     * Sets the neighbor count of every cell in one pass over the rows, from the mine bits. Each
+     * row's mines are first summed over 3 consecutive cells, then the sums of 3 consecutive rows
+     * are added up (minus the cell's own mine); both are branch-free loops over a row, run by
+     * BoardKernels.
+     */
+    private void computeNeighborCounts() {
+        BoardKernels kernels = BoardKernels.INSTANCE;
+        byte[] mines = new byte[cols];
+        byte[] above = new byte[cols]; // Row sums of the previous row (zero above row 0).
+        byte[] current = new byte[cols];
+        byte[] below = new byte[cols];
+        kernels.sumRowMines(grid, 0, cols, mines, current);
+        for (int i = 0; i < rows; i ++) {
+            if (i + 1 < rows) {
+                kernels.sumRowMines(grid, (i + 1) * cols, cols, mines, below);
+            } else {
+                Arrays.fill(below, (byte) 0);
             }
+            kernels.addNeighborCounts(grid, i * cols, cols, above, current, below);
+            byte[] recycled = above;
+            above = current;
+            current = below;
+            below = recycled;
         }
-        isGameOver = true;
-        userWon = false;
     }
 
     /**
-     * Updates the neighbor count given the cell at x, y is a mine.
+     * Moves the mine at 'index' to a random cell without a mine, if there is one. The cells
+     * are picked from the board seed, so the result stays reproducible. The k-th free cell is
+     * drawn directly and found by counting the free cells a word of the mine bitset at a time,
+     * so dense boards need no retries.
      */
-    private void updateNeighbors(int x, int y) {
-        // The increaseCount will check if the new noes are actually valid.
-        increaseCount(x-1, y);
-        increaseCount(x-1, y-1);
-        increaseCount(x-1, y+1);
-        increaseCount(x, y-1);
-        increaseCount(x, y+1);
-        increaseCount(x+1, y+1);
-        increaseCount(x+1, y);
-        increaseCount(x+1, y-1);
+    private void moveMine(int index) {
+        if (numberOfMines >= grid.length) return; // Nowhere to move it.
+        SplittableRandom random = new SplittableRandom(MinesUtil.mixSeed(seed, index));
+        int k = random.nextInt(grid.length - numberOfMines);
+        long[] mineBits = getMineBitset();
+        int target = -1;
+        for (int word = 0; target < 0; word ++) {
+            int base = word << 6;
+            long free = ~mineBits[word];
+            if (grid.length - base < 64) free &= (1L << (grid.length - base)) - 1;
+            int numFree = Long.bitCount(free);
+            if (k >= numFree) {
+                k -= numFree;
+                continue;
+            }
+            for (; k > 0; k --) {
+                free &= free - 1; // Drops the lowest free cell.
+            }
+            target = base + Long.numberOfTrailingZeros(free);
+        }
+        grid[index] &= ~Cell.MINE;
+        updateNeighbors(index, -1);
+        grid[target] |= Cell.MINE;
+        updateNeighbors(target, 1);
     }
 
-    private void increaseCount(int i, int j) {
-        if (!isValid(i, j)) return;
-        grid[i][j].incrementNeighborCount();
+    void printGrid() {
+        if (renderer == null) renderer = new BoardRenderer(System.out);
+        renderer.render(this);
     }
 
-    boolean isValid(int x, int y) {
-        return  !(x < 0 || x >= gridSize || y < 0 || y >= gridSize);
+    /**
+     * Makes printGrid draw with 'renderer', e.g. one showing a window of the board.
+     */
+    void setRenderer(BoardRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    void exposeAllCells() {
+        version ++;
+        for (int i = 0; i < grid.length; i ++) {
+            setUncovered(i);
+        }
+        isGameOver = true;
+        userWon = false;
     }
 
-    private static void addToStringBuilder(StringBuilder builder, int value) {
-        builder.append(value);
-        builder.append(INTER_CELL_SPACING);
-        if (value < 10 ) {
-            builder.append(" ");
+    /**
+     * Adds 'delta' to the neighbor count of every neighbor of cell 'index'.
+     */
+    private void updateNeighbors(int index, int delta) {
+        int numNeighbors = MinesUtil.neighborsOf(index, rows, cols, neighbors);
+        for (int n = 0; n < numNeighbors; n ++) {
+            grid[neighbors[n]] += delta; // The count lives in the low bits.
         }
     }
+
+    boolean isValid(int x, int y) {
+        return  !(x < 0 || x >= rows || y < 0 || y >= cols);
+    }
 }
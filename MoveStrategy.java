@@ -0,0 +1,25 @@
+import java.io.BufferedReader;
+
+/**
+ * A way of playing minesweeper: the policy that picks every move of a game until it ends. The
+ * console and the batch runner only play games through this interface, so strategies can be
+ * swapped and compared side by side (see BatchRunner's tournament mode). SolverOptions, which
+ * runs Solver or IncrementalSolver as configured by the solver flags, is the default one.
+ *
+ * A strategy plays a whole game per call rather than one move, since solvers keep what they
+ * learned from move to move. Implementations must allow concurrent calls on different boards.
+ */
+interface MoveStrategy {
+    /**
+     * Plays the game on 'board' until it ends (or the strategy gives up). 'seed' drives any
+     * random choices. Moves are counted into 'stats' if not null, and reported on the console
+     * if 'allowConsoleOutput' is set ('br' may then be used for interactive input).
+     */
+    void solve(Minesweeper board, long seed, BufferedReader br, boolean allowConsoleOutput,
+            GameStats stats);
+
+    /**
+     * Returns a short human readable description, for result summaries.
+     */
+    String describe();
+}
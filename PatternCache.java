@@ -0,0 +1,169 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded map from non-negative long keys to non-negative long values that evicts the least
+ * recently used entry when full. Used by PatternDeductionEngine to remember what it deduced for
+ * each local pattern. Nothing allocates after construction: the entries live in parallel arrays,
+ * linked into a recency list by index, and are found through an open addressing table of entry
+ * indices (linear probing, with backward shift deletion).
+ *
+ * Not thread safe; each thread gets its own cache. The hit / miss / eviction counts of all the
+ * caches are added up in process-wide totals by flushStats().
+ */
+class PatternCache {
+    static final long MISSING = -1L;
+    private static final int NONE = -1;
+
+    // Totals of all the caches, as of their last flushStats().
+    private static final LongAdder totalHits = new LongAdder();
+    private static final LongAdder totalMisses = new LongAdder();
+    private static final LongAdder totalEvictions = new LongAdder();
+
+    private final int capacity;
+    private final long[] keys;
+    private final long[] values;
+    private final int[] newer; // Recency list, by entry index: head is the most recently used.
+    private final int[] older;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+    private final int[] table; // 1 + entry index, or 0 for a free slot.
+    private final int mask;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    PatternCache(int capacity) {
+        this.capacity = capacity;
+        keys = new long[capacity];
+        values = new long[capacity];
+        newer = new int[capacity];
+        older = new int[capacity];
+        table = new int[Integer.highestOneBit(Math.max(2, capacity)) << 2]; // Load <= 1/2.
+        mask = table.length - 1;
+    }
+
+    /**
+     * Returns the value of 'key' and makes it the most recently used entry, or returns MISSING.
+     */
+    long get(long key) {
+        int entry = table[find(key)] - 1;
+        if (entry < 0) {
+            misses ++;
+            return MISSING;
+        }
+        hits ++;
+        if (entry != head) {
+            unlink(entry);
+            linkFirst(entry);
+        }
+        return values[entry];
+    }
+
+    /**
+     * Adds 'key' (not present) with 'value', evicting the least recently used entry if full.
+     */
+    void put(long key, long value) {
+        int entry;
+        if (size == capacity) {
+            entry = tail;
+            unlink(entry);
+            delete(find(keys[entry]));
+            evictions ++;
+        } else {
+            entry = size ++;
+        }
+        keys[entry] = key;
+        values[entry] = value;
+        table[find(key)] = entry + 1;
+        linkFirst(entry);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds this cache's counts since the last call to the process-wide totals.
+     */
+    void flushStats() {
+        totalHits.add(hits);
+        totalMisses.add(misses);
+        totalEvictions.add(evictions);
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    static long totalLookups() {
+        return totalHits.sum() + totalMisses.sum();
+    }
+
+    /**
+     * Formats the process-wide totals.
+     */
+    static String summary() {
+        long hits = totalHits.sum();
+        long lookups = hits + totalMisses.sum();
+        return "Pattern cache: lookups = " + lookups + ", hits = " + hits + " (" +
+                String.format("%.2f", lookups == 0 ? 0.0 : 100.0 * hits / lookups) +
+                "%), windows solved = " + totalMisses.sum() + ", evictions = " +
+                totalEvictions.sum();
+    }
+
+    /**
+     * Returns the table slot holding 'key', or the free slot where it would go.
+     */
+    private int find(long key) {
+        int slot = slotOf(key);
+        while (table[slot] != 0 && keys[table[slot] - 1] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Frees table slot 'slot', moving back the entries after it that would no longer be found.
+     */
+    private void delete(int slot) {
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (table[next] != 0) {
+            int home = slotOf(keys[table[next] - 1]);
+            // Move the entry into the hole unless its home slot lies in (hole, next].
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    private void unlink(int entry) {
+        if (newer[entry] == NONE) {
+            head = older[entry];
+        } else {
+            older[newer[entry]] = older[entry];
+        }
+        if (older[entry] == NONE) {
+            tail = newer[entry];
+        } else {
+            newer[older[entry]] = newer[entry];
+        }
+    }
+
+    private void linkFirst(int entry) {
+        newer[entry] = NONE;
+        older[entry] = head;
+        if (head != NONE) newer[head] = entry;
+        head = entry;
+        if (tail == NONE) tail = entry;
+    }
+}
@@ -0,0 +1,346 @@
+import java.util.Arrays;
+
+/**
+ * Finds frontier cells that are certainly safe or certainly mines by solving small local
+ * patterns: the 5x5 window around each numbered cell next to the frontier. The constraints of the
+ * numbered cells of the inner 3x3 (whose neighbors all lie in the window) are solved together by
+ * enumerating the mine assignments of their covered neighbors, which catches the 1-1 and 1-2-1
+ * style deductions the single-cell rules miss, at a cost that does not grow with the frontier.
+ *
+ * The same windows come up over and over, within a game and across games, so the outcome of each
+ * is cached. A window is encoded into a long (mixed radix: the 9 inner cells take one of 12
+ * states, a count, covered, marked or off the board; the 16 outer cells one of 3, covered, marked
+ * or anything else), and the 8 rotations and reflections of the window map to the same canonical
+ * key, the smallest of their encodings. The cache (a PatternCache per thread, shared by the games
+ * the thread plays) maps that key to the masks of the window cells forced safe and forced to be
+ * mines, in the canonical orientation.
+ */
+class PatternDeductionEngine {
+    static final int CACHE_CAPACITY = 1 << 16; // Windows remembered per thread.
+
+    private static final int SIZE = 5;
+    private static final int NUM_POSITIONS = SIZE * SIZE;
+    private static final int CENTER = NUM_POSITIONS / 2;
+    private static final int NUM_SYMMETRIES = 8;
+    // States of the inner cells: counts 0-8, then these. The outer cells use OUTER_*.
+    private static final int COVERED = 9;
+    private static final int MARKED = 10;
+    private static final int OFF_BOARD = 11;
+    private static final int INNER_BASE = 12;
+    private static final int OUTER_COVERED = 0;
+    private static final int OUTER_MARKED = 1;
+    private static final int OUTER_OTHER = 2;
+    private static final int OUTER_BASE = 3;
+
+    // SYMMETRY[s][p] is the window position whose cell goes to position p in orientation s.
+    private static final int[][] SYMMETRY = new int[NUM_SYMMETRIES][NUM_POSITIONS];
+    private static final long[] WEIGHT = new long[NUM_POSITIONS]; // Of each position's digit.
+    private static final boolean[] INNER = new boolean[NUM_POSITIONS];
+    private static final int[][] POSITION_NEIGHBORS = new int[NUM_POSITIONS][];
+
+    private static final ThreadLocal<PatternCache> caches =
+            ThreadLocal.withInitial(() -> new PatternCache(CACHE_CAPACITY));
+
+    static {
+        for (int p = 0; p < NUM_POSITIONS; p ++) {
+            int r = p / SIZE - 2;
+            int c = p % SIZE - 2;
+            INNER[p] = Math.abs(r) <= 1 && Math.abs(c) <= 1;
+            for (int s = 0; s < NUM_SYMMETRIES; s ++) {
+                // s & 3 quarter turns, then a reflection if s >= 4.
+                int tr = r;
+                int tc = c;
+                for (int turn = 0; turn < (s & 3); turn ++) {
+                    int t = tr;
+                    tr = tc;
+                    tc = -t;
+                }
+                if (s >= 4) tc = -tc;
+                SYMMETRY[s][p] = (tr + 2) * SIZE + tc + 2;
+            }
+        }
+        long weight = 1;
+        for (int p = 0; p < NUM_POSITIONS; p ++) {
+            WEIGHT[p] = weight;
+            weight *= INNER[p] ? INNER_BASE : OUTER_BASE; // 12^9 * 3^16 < 2^58.
+        }
+        int[] scratch = new int[8];
+        for (int p = 0; p < NUM_POSITIONS; p ++) {
+            if (!INNER[p]) continue;
+            int count = MinesUtil.neighborsOf(p, SIZE, SIZE, scratch);
+            POSITION_NEIGHBORS[p] = Arrays.copyOf(scratch, count);
+        }
+    }
+
+    // Results of the last compute() call.
+    private int[] safeCells = new int[0];
+    private int numSafeCells;
+    private int[] mineCells = new int[0];
+    private int numMineCells;
+
+    // Scratch space.
+    private int[] centers = new int[0];
+    private final int[] window = new int[NUM_POSITIONS]; // Digits of the current window.
+    private final int[] canonical = new int[NUM_POSITIONS];
+    private final int[] neighbors = new int[8];
+    // The window being solved: its covered cells (variables) and the inner constraints.
+    private final int[] varPosition = new int[NUM_POSITIONS];
+    private final int[] varOfPosition = new int[NUM_POSITIONS];
+    private int numVars;
+    private final int[] constraintVars = new int[9]; // Bit mask of the variables of each.
+    private final int[] constraintTarget = new int[9];
+    private int numConstraints;
+    private final int[] ones = new int[9];
+    private final int[] unassigned = new int[9];
+    private int assignment;
+    private int canBeMine;
+    private int canBeSafe;
+    private boolean anySolution;
+
+    /**
+     * Looks for safe cells and mines among the frontier[0, numFrontier) cells (in any order):
+     * the covered cells not marked as mines next to a numbered cell.
+     */
+    void compute(ExactProbabilityEngine.View view, int[] frontier, int numFrontier) {
+        numSafeCells = 0;
+        numMineCells = 0;
+        int rows = view.getRows();
+        int cols = view.getCols();
+        if (centers.length < 8 * numFrontier) {
+            centers = new int[8 * numFrontier];
+            safeCells = new int[NUM_POSITIONS * 8 * numFrontier];
+            mineCells = new int[NUM_POSITIONS * 8 * numFrontier];
+        }
+        int numCenters = 0;
+        for (int i = 0; i < numFrontier; i ++) {
+            int count = MinesUtil.neighborsOf(frontier[i], rows, cols, neighbors);
+            for (int n = 0; n < count; n ++) {
+                if (view.getValue(neighbors[n]) > 0) centers[numCenters ++] = neighbors[n];
+            }
+        }
+        Arrays.sort(centers, 0, numCenters);
+        PatternCache cache = caches.get();
+        for (int i = 0; i < numCenters; i ++) {
+            if (i > 0 && centers[i] == centers[i - 1]) continue;
+            int center = centers[i];
+            readWindow(view, rows, cols, center);
+            int symmetry = canonicalSymmetry();
+            long key = keyOf(symmetry);
+            long masks = cache.get(key);
+            if (masks == PatternCache.MISSING) {
+                masks = solveCanonical(symmetry);
+                cache.put(key, masks);
+            }
+            addCells(center, cols, symmetry, (int) masks, safeCells, true);
+            addCells(center, cols, symmetry, (int) (masks >>> 32), mineCells, false);
+        }
+        cache.flushStats();
+        numSafeCells = unique(safeCells, numSafeCells);
+        numMineCells = unique(mineCells, numMineCells);
+        if (MinesUtil.DBG) MinesUtil.println("Pattern deductions: frontier = " + numFrontier +
+                ", safe = " + numSafeCells + ", mines = " + numMineCells);
+    }
+
+    int getNumSafeCells() {
+        return numSafeCells;
+    }
+
+    int getSafeCell(int i) {
+        return safeCells[i];
+    }
+
+    int getNumMineCells() {
+        return numMineCells;
+    }
+
+    int getMineCell(int i) {
+        return mineCells[i];
+    }
+
+    /**
+     * Fills 'window' with the digits of the cells around 'center'.
+     */
+    private void readWindow(ExactProbabilityEngine.View view, int rows, int cols, int center) {
+        int x = center / cols;
+        int y = center % cols;
+        for (int p = 0; p < NUM_POSITIONS; p ++) {
+            int wx = x + p / SIZE - 2;
+            int wy = y + p % SIZE - 2;
+            int digit;
+            if (wx < 0 || wy < 0 || wx >= rows || wy >= cols) {
+                digit = INNER[p] ? OFF_BOARD : OUTER_OTHER;
+            } else {
+                int index = wx * cols + wy;
+                int value = view.getValue(index);
+                if (value >= 0) {
+                    digit = INNER[p] ? value : OUTER_OTHER;
+                } else if (view.isMarkedAsMine(index)) {
+                    digit = INNER[p] ? MARKED : OUTER_MARKED;
+                } else {
+                    digit = INNER[p] ? COVERED : OUTER_COVERED;
+                }
+            }
+            window[p] = digit;
+        }
+    }
+
+    /**
+     * Returns the orientation with the smallest key: the canonical one.
+     */
+    private int canonicalSymmetry() {
+        int best = 0;
+        long bestKey = keyOf(0);
+        for (int s = 1; s < NUM_SYMMETRIES; s ++) {
+            long key = keyOf(s);
+            if (key < bestKey) {
+                bestKey = key;
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    private long keyOf(int symmetry) {
+        int[] source = SYMMETRY[symmetry];
+        long key = 0;
+        for (int p = 0; p < NUM_POSITIONS; p ++) {
+            key += window[source[p]] * WEIGHT[p];
+        }
+        return key;
+    }
+
+    /**
+     * Adds the board cells of the canonical positions in 'mask' to 'cells'.
+     */
+    private void addCells(int center, int cols, int symmetry, int mask, int[] cells,
+            boolean safe) {
+        int count = safe ? numSafeCells : numMineCells;
+        int[] source = SYMMETRY[symmetry];
+        while (mask != 0) {
+            int p = source[Integer.numberOfTrailingZeros(mask)];
+            mask &= mask - 1;
+            cells[count ++] = center + (p / SIZE - 2) * cols + p % SIZE - 2;
+        }
+        if (safe) {
+            numSafeCells = count;
+        } else {
+            numMineCells = count;
+        }
+    }
+
+    /**
+     * Solves the window in its canonical orientation, 'symmetry'.
+     * Returns the mask of the positions forced safe, plus the mask of those forced to be mines
+     * shifted left by 32. Both are 0 if the constraints have no solution.
+     */
+    private long solveCanonical(int symmetry) {
+        for (int p = 0; p < NUM_POSITIONS; p ++) {
+            canonical[p] = window[SYMMETRY[symmetry][p]];
+        }
+        numVars = 0;
+        numConstraints = 0;
+        Arrays.fill(varOfPosition, -1);
+        for (int p = 0; p < NUM_POSITIONS; p ++) {
+            if (!INNER[p] || canonical[p] > 8) continue;
+            int target = canonical[p];
+            int vars = 0;
+            for (int neighbor : POSITION_NEIGHBORS[p]) {
+                if (isMarked(neighbor)) {
+                    target --;
+                } else if (isCovered(neighbor)) {
+                    if (varOfPosition[neighbor] < 0) {
+                        varOfPosition[neighbor] = numVars;
+                        varPosition[numVars ++] = neighbor;
+                    }
+                    vars |= 1 << varOfPosition[neighbor];
+                }
+            }
+            if (target < 0 || target > Integer.bitCount(vars)) return 0L;
+            if (vars == 0) continue;
+            constraintVars[numConstraints] = vars;
+            constraintTarget[numConstraints] = target;
+            ones[numConstraints] = 0;
+            unassigned[numConstraints] = Integer.bitCount(vars);
+            numConstraints ++;
+        }
+        if (numVars == 0) return 0L;
+        assignment = 0;
+        canBeMine = 0;
+        canBeSafe = 0;
+        anySolution = false;
+        search(0);
+        if (!anySolution) return 0L;
+        int allVars = (1 << numVars) - 1;
+        int safeVars = allVars & ~canBeMine;
+        int mineVars = allVars & ~canBeSafe;
+        return positionMask(safeVars) | (long) positionMask(mineVars) << 32;
+    }
+
+    /**
+     * Enumerates the assignments of variables var, var + 1, ... consistent with the constraints,
+     * recording which variables can be mines and which can be safe. Stops early once every
+     * variable can be both.
+     */
+    private void search(int var) {
+        if (var == numVars) {
+            anySolution = true;
+            canBeMine |= assignment;
+            canBeSafe |= ~assignment;
+            return;
+        }
+        int bit = 1 << var;
+        for (int value = 0; value <= 1; value ++) {
+            boolean consistent = true;
+            for (int c = 0; c < numConstraints; c ++) {
+                if ((constraintVars[c] & bit) == 0) continue;
+                unassigned[c] --;
+                ones[c] += value;
+                if (ones[c] > constraintTarget[c] ||
+                        ones[c] + unassigned[c] < constraintTarget[c]) {
+                    consistent = false;
+                }
+            }
+            if (consistent) {
+                if (value == 1) assignment |= bit;
+                search(var + 1);
+                assignment &= ~bit;
+            }
+            for (int c = 0; c < numConstraints; c ++) {
+                if ((constraintVars[c] & bit) == 0) continue;
+                unassigned[c] ++;
+                ones[c] -= value;
+            }
+            int allVars = (1 << numVars) - 1;
+            if ((canBeMine & canBeSafe & allVars) == allVars) return;
+        }
+    }
+
+    private int positionMask(int vars) {
+        int mask = 0;
+        while (vars != 0) {
+            mask |= 1 << varPosition[Integer.numberOfTrailingZeros(vars)];
+            vars &= vars - 1;
+        }
+        return mask;
+    }
+
+    private boolean isCovered(int p) {
+        return INNER[p] ? canonical[p] == COVERED : canonical[p] == OUTER_COVERED;
+    }
+
+    private boolean isMarked(int p) {
+        return INNER[p] ? canonical[p] == MARKED : canonical[p] == OUTER_MARKED;
+    }
+
+    /**
+     * Sorts cells[0, count), removes the duplicates and returns the new count.
+     */
+    private static int unique(int[] cells, int count) {
+        Arrays.sort(cells, 0, count);
+        int kept = 0;
+        for (int i = 0; i < count; i ++) {
+            if (kept == 0 || cells[kept - 1] != cells[i]) cells[kept ++] = cells[i];
+        }
+        return kept;
+    }
+}
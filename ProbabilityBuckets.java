@@ -0,0 +1,159 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * The frontier cells of IncrementalSolver (covered cells with a mine probability), bucketed by
+ * that probability so that the lowest risk cells are found in O(1). Probabilities are exact
+ * fractions remaining / available with available <= 8 (see CellStateStore), so there are only
+ * NUM_BUCKETS distinct values: the buckets are ranked by value and a bit mask tracks the non-empty
+ * ones, for lowestBucket(). Each bucket keeps its cells densely packed in no particular order,
+ * with a table of their slots, so add, remove and contains are O(1) and get(bucket, i) lists a
+ * bucket. A cell moves between buckets only when its probability changes.
+ */
+class ProbabilityBuckets {
+    static final int NUM_BUCKETS;
+    private static final int[] BUCKET_OF_CODE = new int[256];
+    private static final double[] PROB_OF_BUCKET;
+
+    static {
+        // Rank the probability codes by value; all the fractions r / a with r < a <= 8.
+        int[] codes = new int[64];
+        int numCodes = 0;
+        for (int available = 2; available <= 8; available ++) {
+            for (int remaining = 1; remaining < available; remaining ++) {
+                int code = CellStateStore.probCode(remaining, available);
+                if (code == ((remaining << 4) | available)) codes[numCodes ++] = code;
+            }
+        }
+        Integer[] ranked = new Integer[numCodes];
+        for (int i = 0; i < numCodes; i ++) {
+            ranked[i] = codes[i];
+        }
+        Arrays.sort(ranked, (a, b) -> Double.compare(CellStateStore.probOf(a),
+                CellStateStore.probOf(b)));
+        NUM_BUCKETS = numCodes;
+        PROB_OF_BUCKET = new double[numCodes];
+        Arrays.fill(BUCKET_OF_CODE, -1);
+        for (int bucket = 0; bucket < numCodes; bucket ++) {
+            BUCKET_OF_CODE[ranked[bucket]] = bucket;
+            PROB_OF_BUCKET[bucket] = CellStateStore.probOf(ranked[bucket]);
+        }
+    }
+
+    private final IntBuffer positions; // 1 + slot of each cell in its bucket, or 0 if absent.
+    private final int[][] elements = new int[NUM_BUCKETS][];
+    private final int[] sizes = new int[NUM_BUCKETS];
+    private int nonEmpty; // Bit b is set if bucket b has cells.
+    private int size;
+
+    ProbabilityBuckets(int universeSize) {
+        this(IntBuffer.allocate(universeSize));
+    }
+
+    /**
+     * Creates an empty queue over 'positions', which must hold universeSize zeroes (e.g. a view
+     * of a memory-mapped file), or the positions of an earlier queue, whose cells must then be
+     * restore()d. The buckets themselves are on the heap; they only hold the frontier.
+     */
+    ProbabilityBuckets(IntBuffer positions) {
+        this.positions = positions;
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket ++) {
+            elements[bucket] = new int[16];
+        }
+    }
+
+    /**
+     * Adds 'cell' with probability code 'code' (not 0). Returns false if it was already present.
+     */
+    boolean add(int cell, int code) {
+        if (positions.get(cell) != 0) return false;
+        int bucket = BUCKET_OF_CODE[code];
+        int[] cells = elements[bucket];
+        int slot = sizes[bucket] ++;
+        if (slot == cells.length) {
+            cells = elements[bucket] = Arrays.copyOf(cells, 2 * slot);
+        }
+        cells[slot] = cell;
+        positions.put(cell, slot + 1);
+        nonEmpty |= 1 << bucket;
+        size ++;
+        return true;
+    }
+
+    /**
+     * Puts back 'cell', with probability code 'code', that the positions of an earlier queue list
+     * as present. Its old slot is stale, as the buckets start out empty.
+     */
+    void restore(int cell, int code) {
+        positions.put(cell, 0);
+        add(cell, code);
+    }
+
+    /**
+     * Removes 'cell', which has probability code 'code' if present. Returns false if it was not
+     * present.
+     */
+    boolean remove(int cell, int code) {
+        int position = positions.get(cell);
+        if (position == 0) return false;
+        int bucket = BUCKET_OF_CODE[code];
+        int[] cells = elements[bucket];
+        // Fill the hole with the last cell of the bucket.
+        int last = cells[-- sizes[bucket]];
+        cells[position - 1] = last;
+        positions.put(last, position);
+        positions.put(cell, 0);
+        if (sizes[bucket] == 0) nonEmpty &= ~(1 << bucket);
+        size --;
+        return true;
+    }
+
+    boolean contains(int cell) {
+        return positions.get(cell) != 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the bucket of the lowest probability cells, or -1 if there are none.
+     */
+    int lowestBucket() {
+        return nonEmpty == 0 ? -1 : Integer.numberOfTrailingZeros(nonEmpty);
+    }
+
+    /**
+     * Returns the bucket of the cells with probability code 'code' (not 0).
+     */
+    static int bucketOf(int code) {
+        return BUCKET_OF_CODE[code];
+    }
+
+    static double probOf(int bucket) {
+        return PROB_OF_BUCKET[bucket];
+    }
+
+    int size(int bucket) {
+        return sizes[bucket];
+    }
+
+    /**
+     * Returns the i-th cell of 'bucket', 0 <= i < size(bucket).
+     */
+    int get(int bucket, int i) {
+        return elements[bucket][i];
+    }
+
+    /**
+     * Copies all the cells, lowest probability first, into 'dest' and returns how many there are.
+     */
+    int copyTo(int[] dest) {
+        int count = 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket ++) {
+            System.arraycopy(elements[bucket], 0, dest, count, sizes[bucket]);
+            count += sizes[bucket];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,98 @@
+import java.nio.IntBuffer;
+
+/**
+ * A set of ints in [0, universeSize) that can also return its k-th smallest element, for picking
+ * a random element in a reproducible order. A Fenwick tree counts, over ranges of values, the
+ * values absent from the set: add, remove, contains and get are O(log universeSize), and a table
+ * of zeroes is the full set, so a fresh table needs no init pass. The table is an IntBuffer so
+ * that it can live off-heap (see CellStateStore).
+ */
+class RankedIntSet {
+    // Entry i - 1 counts the absent values in [i - (i & -i), i), for i in [1, universeSize].
+    private final IntBuffer absent;
+    private final int universeSize;
+    private final int highestStep; // The highest power of 2 <= universeSize.
+    private int size;
+
+    /**
+     * Creates the set of all the ints in [0, universeSize).
+     */
+    RankedIntSet(int universeSize) {
+        this(IntBuffer.allocate(universeSize));
+    }
+
+    /**
+     * Creates a set over 'absent', a table of universeSize ints written by a set like this one:
+     * all zeroes for the full set.
+     */
+    RankedIntSet(IntBuffer absent) {
+        this.absent = absent;
+        universeSize = absent.capacity();
+        highestStep = universeSize == 0 ? 0 : Integer.highestOneBit(universeSize);
+        int numAbsent = 0;
+        for (int i = universeSize; i > 0; i -= i & -i) {
+            numAbsent += absent.get(i - 1);
+        }
+        size = universeSize - numAbsent;
+    }
+
+    /**
+     * Adds 'value'. Returns false if it was already present.
+     */
+    boolean add(int value) {
+        if (contains(value)) return false;
+        update(value, -1);
+        size ++;
+        return true;
+    }
+
+    /**
+     * Removes 'value'. Returns false if it was not present.
+     */
+    boolean remove(int value) {
+        if (!contains(value)) return false;
+        update(value, 1);
+        size --;
+        return true;
+    }
+
+    boolean contains(int value) {
+        // The entry of value + 1 covers [value + 1 - lowbit, value + 1); take away the entries
+        // that make up [value + 1 - lowbit, value) to leave the count of 'value' itself.
+        int i = value + 1;
+        int count = absent.get(i - 1);
+        int from = i - (i & -i);
+        for (int j = i - 1; j > from; j -= j & -j) {
+            count -= absent.get(j - 1);
+        }
+        return count == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the k-th smallest element, 0 <= k < size().
+     */
+    int get(int k) {
+        int position = 0; // Every element below 'position' is among the k smallest.
+        for (int step = highestStep; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= universeSize) {
+                int present = step - absent.get(next - 1);
+                if (present <= k) {
+                    position = next;
+                    k -= present;
+                }
+            }
+        }
+        return position;
+    }
+
+    private void update(int value, int delta) {
+        for (int i = value + 1; i <= universeSize; i += i & -i) {
+            absent.put(i - 1, absent.get(i - 1) + delta);
+        }
+    }
+}
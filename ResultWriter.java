@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams one record per played game to a file, as JSON lines or (for a file name ending in
+ * ".csv") as CSV with a header row. Records are appended to a direct buffer that is written to the
+ * file channel whenever it fills up, so the file grows as the batch runs. Safe to call from
+ * several threads; records then appear in completion order, not in game id order. Tournament
+ * results have an extra "strategy" field, the 1-based # of the strategy that played the game.
+ */
+class ResultWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String CSV_HEADER =
+            "game,seed,rows,cols,mines,result,moves,guesses,nanos\n";
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final boolean csv;
+    private final boolean withStrategy;
+
+    ResultWriter(String fileName) throws IOException {
+        this(fileName, false);
+    }
+
+    ResultWriter(String fileName, boolean withStrategy) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        csv = fileName.endsWith(".csv");
+        this.withStrategy = withStrategy;
+        if (csv) write(withStrategy ? CSV_HEADER.replace("\n", ",strategy\n") : CSV_HEADER);
+    }
+
+    /**
+     * Appends the record of a game to 'line' (which is not cleared first), in this writer's
+     * format and including the line break. 'strategy' is only written if this writer was
+     * created with a strategy field.
+     */
+    void format(StringBuilder line, int gameId, long seed, int rows, int cols, int numberOfMines,
+            boolean won, int moves, int guesses, long nanos, int strategy) {
+        String result = won ? "WON" : "LOST";
+        if (csv) {
+            line.append(gameId).append(',').append(seed).append(',').append(rows).append(',')
+                    .append(cols).append(',').append(numberOfMines).append(',').append(result)
+                    .append(',').append(moves).append(',').append(guesses).append(',')
+                    .append(nanos);
+            if (withStrategy) line.append(',').append(strategy);
+            line.append('\n');
+        } else {
+            line.append("{\"game\":").append(gameId).append(",\"seed\":").append(seed)
+                    .append(",\"rows\":").append(rows).append(",\"cols\":").append(cols)
+                    .append(",\"mines\":").append(numberOfMines).append(",\"result\":\"")
+                    .append(result)
+                    .append("\",\"moves\":").append(moves).append(",\"guesses\":").append(guesses)
+                    .append(",\"nanos\":").append(nanos);
+            if (withStrategy) line.append(",\"strategy\":").append(strategy);
+            line.append("}\n");
+        }
+    }
+
+    /**
+     * Appends 'text' (ASCII) to the file.
+     */
+    synchronized void write(CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); i ++) {
+            if (!buffer.hasRemaining()) flush();
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves a game in progress to a file and resumes it, e.g. to keep the position of a long solve on
+ * a huge board, or to hand a mid-game position to the solver for profiling. A game is stored as
+ * two bitsets, its mines and its covered cells, so the file takes 2 bits per cell. Files are
+ * written and read through a FileChannel in large chunks, with the bitsets moved in bulk through
+ * LongBuffer views, so loading costs about as much as reading the file plus building the board.
+ *
+ * File format (big endian):
+ *   int magic ("MSSV"), int version, int rows, int cols, int numberOfMines, long seed, int flags
+ *   (FIRST_CLICK_SAFE), then long[(rows * cols + 63) / 64] mine bitset and the covered bitset in
+ *   the same layout.
+ * Version 1 files, of square boards, have a single int gridSize instead of rows and cols.
+ */
+class SavedGame {
+    private static final int MAGIC = 0x4D535356; // "MSSV"
+    private static final int VERSION = 2;
+    private static final int SQUARE_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int FIRST_CLICK_SAFE = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private SavedGame() {
+    }
+
+    static void save(Minesweeper board, String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(board.getRows()).putInt(board.getCols())
+                    .putInt(board.getNumberOfMines()).putLong(board.getSeed())
+                    .putInt(board.isFirstClickSafe() ? FIRST_CLICK_SAFE : 0);
+            writeWords(channel, buffer, board.getMineBitset());
+            writeWords(channel, buffer, board.getCoveredBitset());
+            flush(channel, buffer);
+        }
+    }
+
+    static Minesweeper load(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            fill(channel, buffer, 8);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a saved game: " + fileName);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION && version != SQUARE_VERSION) {
+                throw new IOException("Unsupported saved game version: " + version);
+            }
+            fill(channel, buffer, version == SQUARE_VERSION ? HEADER_SIZE - 12 : HEADER_SIZE - 8);
+            int rows = buffer.getInt();
+            int cols = version == SQUARE_VERSION ? rows : buffer.getInt();
+            int numberOfMines = buffer.getInt();
+            long seed = buffer.getLong();
+            int flags = buffer.getInt();
+            if (!Minesweeper.isValidShape(rows, cols)) {
+                throw new IOException("Invalid board size in saved game: " + rows + " x " + cols);
+            }
+            int numWords = (rows * cols + 63) / 64;
+            long[] mineBits = readWords(channel, buffer, numWords);
+            long[] coveredBits = readWords(channel, buffer, numWords);
+            Minesweeper board = new Minesweeper(rows, cols, mineBits, seed);
+            if (board.getNumberOfMines() != numberOfMines) {
+                throw new IOException("Corrupt saved game: " + board.getNumberOfMines() +
+                        " mines instead of " + numberOfMines);
+            }
+            board.setFirstClickSafe((flags & FIRST_CLICK_SAFE) != 0);
+            board.restoreCovered(coveredBits);
+            return board;
+        }
+    }
+
+    /**
+     * Appends 'words' to 'buffer' (in write mode), writing it to the channel whenever it fills up.
+     */
+    private static void writeWords(FileChannel channel, ByteBuffer buffer, long[] words)
+            throws IOException {
+        int word = 0;
+        while (word < words.length) {
+            if (buffer.remaining() < Long.BYTES) flush(channel, buffer);
+            int count = Math.min(words.length - word, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().put(words, word, count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            word += count;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long[] readWords(FileChannel channel, ByteBuffer buffer, int numWords)
+            throws IOException {
+        long[] words = new long[numWords];
+        int word = 0;
+        while (word < numWords) {
+            int count = Math.min(numWords - word, BUFFER_SIZE / Long.BYTES);
+            fill(channel, buffer, count * Long.BYTES);
+            buffer.asLongBuffer().get(words, word, count);
+            word += count;
+        }
+        return words;
+    }
+
+    /**
+     * Reads exactly 'length' bytes from the channel into 'buffer', leaving it ready to be read.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int length)
+            throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Saved game is truncated");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * The plain Java BoardKernels. The loops are branch-free array arithmetic, which the JIT
+ * vectorizes where it can (not across the byte to int widening of the snapshot).
+ */
+final class ScalarKernels implements BoardKernels {
+    @Override
+    public void sumRowMines(byte[] grid, int rowStart, int cols, byte[] mines, byte[] sums) {
+        int last = cols - 1;
+        for (int j = 0; j <= last; j ++) {
+            mines[j] = (byte) ((grid[rowStart + j] & Cell.MINE) >> 4);
+        }
+        for (int j = 1; j < last; j ++) {
+            sums[j] = (byte) (mines[j - 1] + mines[j] + mines[j + 1]);
+        }
+        if (last == 0) {
+            sums[0] = mines[0];
+        } else {
+            sums[0] = (byte) (mines[0] + mines[1]);
+            sums[last] = (byte) (mines[last - 1] + mines[last]);
+        }
+    }
+
+    @Override
+    public void addNeighborCounts(byte[] grid, int rowStart, int cols, byte[] above,
+            byte[] current, byte[] below) {
+        for (int j = 0; j < cols; j ++) {
+            byte cell = grid[rowStart + j];
+            grid[rowStart + j] = (byte) (cell |
+                    (above[j] + current[j] + below[j] - ((cell & Cell.MINE) >> 4)));
+        }
+    }
+
+    @Override
+    public void snapshotValues(byte[] grid, int[] snapshot, int from, int to) {
+        for (int index = from; index < to; index ++) {
+            snapshot[index] = Cell.snapshotValue(grid[index]);
+        }
+    }
+
+    @Override
+    public int countProbless(int[] snapshot, boolean[] isMine, double[] mineProb, int from,
+            int to) {
+        // Counted without a branch per cell: whether a cell counts is unpredictable.
+        int count = 0;
+        for (int index = from; index < to; index ++) {
+            count += snapshot[index] == -1 & !isMine[index] & mineProb[index] > 1.0 ? 1 : 0;
+        }
+        return count;
+    }
+
+    @Override
+    public String describe() {
+        return "scalar";
+    }
+}
@@ -1,8 +1,10 @@
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 
 /**
@@ -11,120 +13,210 @@ import java.util.Random;
 class Solver {
     private static final int HIGH_MINE_PROB_INT = 1000;
     private static final double UNASSIGNED_PROB = 1.1;
+    // Exact probabilities this close to 0 or 1 are treated as proofs.
+    private static final double EXACT_EPSILON = 1e-9;
+    private static final int NO_CELL = -1;
+    // analyzeBoard splits the grid into bands of whole rows of at least this many cells.
+    private static final int MIN_BAND_CELLS = 1 << 14;
+    // Band.problessCell skips blocks of this many cells by their count.
+    private static final int PROBLESS_BLOCK = 1 << 10;
+    private static final double SETTLED = -1.0; // constraintProb of cells that constrain nothing.
     private Minesweeper board;
-    private int gridSize;
-    private int snapshot[][];
+    private int rows;
+    private int cols;
 
-    private double mineProb[][];
-    private boolean isMine[][];
+    // All the per-cell state is indexed by the row-major cell index x * cols + y, and cells
+    // are passed around as such indices.
+    private int snapshot[];
+
+    private double mineProb[];
+    private boolean isMine[];
     private Random random;
 
     // This is an integer to allow multiple floating point probability values to map to
     // the same bucket.
     private int minMineProb = HIGH_MINE_PROB_INT;  // Probabilty value for cells in 'lowProbCells'.
-    private LinkedList<IntPair> lowProbCells; // Stores the list of lowest probability cells.
+    private final IntQueue lowProbCells = new IntQueue(); // The lowest probability cells.
 
     // Stores a cell picked at random for whom a probability could not be computed. This happens if
-    // none of this neighbors are uncoverd and have a "# of mines" value.
-    private IntPair randomProblessCell;
+    // none of this neighbors are uncoverd and have a "# of mines" value. NO_CELL if there is none.
+    private int randomProblessCell = NO_CELL;
     private int numProbLessCells; // Number of such probability-less cells.
 
+    // For each numbered cell, the probability its constraint gives each of its available
+    // (covered, not marked as mine) neighbors, or 0 if it gives none. SETTLED for numbered
+    // cells whose covered neighbors are all marked as mines, which the analysis then skips for
+    // good (marks are never removed). Always 0 for the other cells, since cells never lose
+    // their number.
+    private double constraintProb[];
+
+    // toBeUncovered stores the cells that we can potentially uncover (that the solver considers
+    // as not being mines). However, in a single move we uncover only 1 cell (assuming this is the
+    // rule for any solver).
+    private final IntQueue toBeUncovered = new IntQueue();
+
+    // Whether a single iteration uncovers all the cells it proved safe, rather than just the first.
+    private boolean sweepAllSafe;
+
+    // Computes exact probabilities when there is no safe cell; null to use the heuristic only.
+    private ExactProbabilityEngine exactEngine;
+    // Finds deductions that combine several cells' constraints; null to skip them.
+    private LinearDeductionEngine linearEngine;
+    // Solves the small patterns around the frontier, with a cache; null to skip them.
+    private PatternDeductionEngine patternEngine;
+    // Covered cells next to a numbered cell, for the engines above.
+    private int[] frontier = new int[64];
+    private int numUnknownCells; // Covered cells not marked as mines, set with the frontier.
+    private int numMarkedAsMines; // Set with the frontier.
+    private final int[] neighbors = new int[8]; // Scratch space for the neighbors of a cell.
+
+    // analyzeBoard runs each of its phases band by band, on 'pool' if set (else on the calling
+    // thread), and merges the results of the bands in band order, which is cell index order. So
+    // the results do not depend on the pool or its # of threads.
+    private final Band[] bands;
+    private ForkJoinPool pool;
+
+    private GameStats stats; // Counts the moves made; may be null.
+    private SolverMetrics metrics; // Times the phases of the moves; may be null.
+
     Solver(Minesweeper board) {
+        this(board, MinesUtil.randomSeed());
+    }
+
+    /**
+     * Creates a solver whose random choices (among equally likely guesses) are driven by 'seed'.
+     */
+    Solver(Minesweeper board, long seed) {
         this.board = board;
-        this.gridSize = board.getGridSize();
-        snapshot = new int[gridSize][gridSize];
-        mineProb = new double[gridSize][gridSize];
-        isMine = new boolean[gridSize][gridSize];
-        lowProbCells = new LinkedList<IntPair>();
-        random = new Random(System.currentTimeMillis());
+        this.rows = board.getRows();
+        this.cols = board.getCols();
+        int numCells = board.getNumCells();
+        snapshot = new int[numCells];
+        mineProb = new double[numCells];
+        Arrays.fill(mineProb, UNASSIGNED_PROB);
+        isMine = new boolean[numCells];
+        constraintProb = new double[numCells];
+        random = new Random(seed);
+        int bandRows = Math.max(1, MIN_BAND_CELLS / cols);
+        bands = new Band[(rows + bandRows - 1) / bandRows];
+        for (int b = 0; b < bands.length; b ++) {
+            bands[b] = new Band(b * bandRows * cols, Math.min(rows, (b + 1) * bandRows) * cols);
+        }
+        for (int b = 1; b < bands.length; b ++) {
+            bands[b].previous = bands[b - 1];
+            bands[b - 1].next = bands[b];
+        }
     }
 
-    void solve(BufferedReader br, boolean allowConsoleOutput) {
+    void setSweepAllSafe(boolean sweepAllSafe) {
+        this.sweepAllSafe = sweepAllSafe;
+    }
+
+    void setExactProbabilities(boolean exactProbabilities) {
+        exactEngine = exactProbabilities ? new ExactProbabilityEngine() : null;
+    }
 
-        // extraCellsToProcess stores the additional cells to be processed as a byproduct of processing a cell.
-        // This can happen if when processing a cell, we end up marking another cell as a mine. This
-        // has potential implications for other neighboring cells since we have definite knowledge
-        // of a particular cell being a mine.
-        LinkedList<IntPair> extraCellsToProcess = new LinkedList<IntPair>();
+    void setLinearDeductions(boolean linearDeductions) {
+        linearEngine = linearDeductions ? new LinearDeductionEngine() : null;
+    }
+
+    void setPatternDeductions(boolean patternDeductions) {
+        patternEngine = patternDeductions ? new PatternDeductionEngine() : null;
+    }
+
+    /**
+     * Whether to analyze the bands of the board in parallel on the common ForkJoinPool. Only
+     * pays off for large boards; the moves made are the same either way.
+     */
+    void setParallel(boolean parallel) {
+        pool = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
+    void setStats(GameStats stats) {
+        this.stats = stats;
+    }
+
+    void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
 
-        // toBeUncovered stores the cells that we can potentially uncover (that the solver considers
-        // as not being mines). However, in a single move we uncover only 1 cell (assuming this is the
-        // rule for any solver).
-        LinkedList<IntPair> toBeUncovered = new LinkedList<IntPair>();
+    void solve(BufferedReader br, boolean allowConsoleOutput) {
         boolean done = false;
         while (!done) {
-            // Step 0: Get the current state of the uncovered cells from the board. Reset probabilty
-            // matrix, clear prior state.
-            board.updateUncoveredCellSnapshot(snapshot);
-            resetProbabilityMatrix();
-            extraCellsToProcess.clear();
-            toBeUncovered.clear();
+            // Steps 0 and 1: Refresh the snapshot and process all the cells.
+            analyzeBoard();
 
-            // Step 1: Process all cells, including multiple iterations if a cell has side-effects
-            // onother cells. When processing a cell, we look at the neighbors, how many of them can
-            // be mines and how many are uncovered. If we know a cell has to be a mine, we mark it
-            // so internally and use this information in subsequent processing.
-           
-            // We keep track of the "set" of lowest probability cells, so that we can choose among
-            // this in case we don't have a definite candidate for a mine. We use 'minMineProb' to
-            // keep track of the probability value and 'lowProbCells' to keep track of the set of
-            // these cells.
-            minMineProb = HIGH_MINE_PROB_INT;
-            lowProbCells.clear();
-            for (int i = 0; i < gridSize; i ++) {
-                for (int j = 0; j < gridSize; j ++) {
-                    if (snapshot[i][j] > 0) {
-                        // The cell is uncovered and has mines among its neighbors.
-                        processCell(i, j, extraCellsToProcess, toBeUncovered);
-                        mineProb[i][j] = 0.0; // This cell is definetly not a mine.
-                    }
+            // Step 2: Pick a random probability-less cell and compute its probability.
+            long start = metrics != null ? metrics.start() : 0;
+            int problessCellProb = randomProbabilityLessCell();
+            if (metrics != null) metrics.stop(SolverMetrics.GUESS, start);
+            if (problessCellProb < minMineProb) {
+                if (MinesUtil.DBG) MinesUtil.println("probless cell prob: " + problessCellProb  +
+                        " minMineProb: " + minMineProb);
+                lowProbCells.clear();
+            }
+
+            // Step 2a: Without a safe cell, solve the local patterns around the frontier if
+            // enabled. If that only finds mines, start over: they change the probabilities.
+            if (patternEngine != null && toBeUncovered.isEmpty()) {
+                start = metrics != null ? metrics.start() : 0;
+                boolean foundMines = patternDeductions();
+                if (metrics != null) metrics.stop(SolverMetrics.DEDUCTION, start);
+                if (foundMines && toBeUncovered.isEmpty()) {
+                    lowProbCells.clear();
+                    continue;
                 }
             }
 
-            // We might have additional cells to process since marking a cell as mine has
-            // side-effects on other neighboring cells.
-            MinesUtil.println("Processing additional cells.");
-            while (!extraCellsToProcess.isEmpty()) {
-                IntPair cell = extraCellsToProcess.removeFirst();
-                if (!board.isCovered(cell.x, cell.y)) {
-                    processCell(cell.x, cell.y, extraCellsToProcess, toBeUncovered);
+            // Step 2b: Without a safe cell, combine the constraints of several cells if enabled.
+            // Same as above if that only finds mines.
+            if (linearEngine != null && toBeUncovered.isEmpty()) {
+                start = metrics != null ? metrics.start() : 0;
+                boolean foundMines = linearDeductions();
+                if (metrics != null) metrics.stop(SolverMetrics.DEDUCTION, start);
+                if (foundMines && toBeUncovered.isEmpty()) {
+                    lowProbCells.clear();
+                    continue;
                 }
             }
 
-            // Step 2: Pick a random probability-less cell and compute its probability.
-            int problessCellProb = randomProbabilityLessCell(board);
-            if (problessCellProb < minMineProb) {
-                MinesUtil.println("probless cell prob: " + problessCellProb  +
-                        " minMineProb: " + minMineProb);
-                lowProbCells.clear();
+            // Step 2c: Without a safe cell, compute exact probabilities if enabled. This can also
+            // prove more cells safe (or mines).
+            int exactMove = NO_CELL;
+            if (exactEngine != null && toBeUncovered.isEmpty()) {
+                start = metrics != null ? metrics.start() : 0;
+                exactMove = exactProbabilityMove();
+                if (metrics != null) metrics.stop(SolverMetrics.DEDUCTION, start);
             }
 
             // Step 3: Make a move. Choose a cell to uncover if we have a clear choice. Otherwise
             // choose a cell at random (with the lowest probability of being a mine).
-            IntPair move = null;
-            if (toBeUncovered.isEmpty()) {
-                if (lowProbCells.isEmpty() || problessCellProb < minMineProb) {
+            if (sweepAllSafe && !toBeUncovered.isEmpty()) {
+                // Every cell in toBeUncovered is safe, so uncover all of them before recomputing.
+                done = uncoverAll(allowConsoleOutput);
+                if (allowConsoleOutput) board.printGrid();
+                toBeUncovered.clear();
+                lowProbCells.clear();
+                continue;
+            }
+            int move = NO_CELL;
+            boolean guess = toBeUncovered.isEmpty();
+            if (guess) {
+                if (exactMove != NO_CELL) {
+                    move = exactMove;
+                } else if (lowProbCells.isEmpty() || problessCellProb < minMineProb) {
                     MinesUtil.println("Low prob cells empty ! Using probless cell.");
                     move = randomProblessCell;
                 } else {
-                    move = lowProbCells.removeFirst();
+                    move = lowProbCells.poll();
                 }
                 // Choose a random low prob one.
             } else {
-                move = toBeUncovered.removeFirst();
+                move = toBeUncovered.poll();
             }
 
-            if (move != null) {
-                if (allowConsoleOutput) System.out.println("Decided a move, uncover: " + move.x + " , " + move.y);
-                if (board.exposeCell(move.x, move.y)) {
-                    MinesUtil.println("Game ended.");
-                    if (board.hasUserWon()) {
-                        System.out.println("Solver won !");
-                    } else {
-                        System.out.println("Solver lost !");
-                    }
-                    done = true;
-                }
+            if (move != NO_CELL) {
+                done = makeMove(move, guess, allowConsoleOutput);
                 if (allowConsoleOutput) board.printGrid();
             } else {
                 MinesUtil.println("Null move.");
@@ -133,194 +225,277 @@ class Solver {
             // Do cleanup.
             toBeUncovered.clear();
             lowProbCells.clear();
-            extraCellsToProcess.clear();
         }
     }
 
     /**
-     * Processes a single cell (x, y):
-     * Looks at neighbors and the # of cells that are covered among them. Also looks at the # of
-     * cells that we have previously marked at mines. Uses this information to compute cells that
-     * can either be marked as a mine or uncovered in the next move.
-     * Also computes any cells that might have a side-effect as a result of marking a cell as a
-     * mine.
+     * Runs steps 0 and 1 of a solver iteration without making a move, and returns the # of cells
+     * found to be safe. Lets MinesBenchmark time the snapshot refresh and the cell analysis.
      */
-    private void processCell(int x, int y, List<IntPair> toBeProcessed, List<IntPair> toBeUncovered) {
-        int numNeighborMines = snapshot[x][y];
-
-        // numCovered counts the # of neighbors of (x, y) that are still covered (unexposed).
-        int numCovered = 0;
-        // numMarkedAsMines counts the # of uncovered neighbors that we have marked as mines.
-        int numMarkedAsMines = 0;
-
-        // List of all (valid) neighbors.
-        LinkedList<IntPair> neighbors = new LinkedList<IntPair>();
-
-        // List of cells that are not marked as mines but are covered.
-        LinkedList<IntPair> availableCells = new LinkedList<IntPair>();
-        MinesUtil.computeNeighborList(x, y, gridSize, neighbors);
-        MinesUtil.println("Cell(x = " + x + ", y = " + y + " has " + neighbors.size() + " neighbors.");
-
-        // First among the neighbors look at the # of cells that are covered and # marked as mines.
-        for (IntPair pair : neighbors) {
-            int covered = isCovered(pair.x, pair.y);
-            int markedAsMine = isMarkedAsMine(pair.x, pair.y);
-            if (covered == 0 && markedAsMine == 1) {
-                // This should not happen.
-                MinesUtil.println("Unmarking mine as cell got uncovered:" + pair.x +
-                        ", " + pair.y);
-                // unmark cell as mine.
-                markedAsMine = 0;
-            }
-            numCovered += covered;
-            numMarkedAsMines += markedAsMine;
-            if (markedAsMine == 0 && covered == 1) {
-                availableCells.add(pair);
-            }
-            if (markedAsMine == 1) {
-                MinesUtil.println("Have " + pair.x + ", " + pair.y + " as a mine.");
+    int analyze() {
+        analyzeBoard();
+        return toBeUncovered.size();
+    }
+
+    /**
+     * Refreshes the snapshot and processes every numbered cell, filling 'toBeUncovered',
+     * 'lowProbCells' and the probability matrix, and marking the cells found to be mines.
+     */
+    private void analyzeBoard() {
+        // Step 0: Get the current state of the uncovered cells from the board.
+        long start = metrics != null ? metrics.start() : 0;
+        runOnBands(Band::refreshSnapshot);
+        if (metrics != null) {
+            metrics.stop(SolverMetrics.SNAPSHOT, start);
+            for (Band band : bands) {
+                metrics.countCells(band.numNumbered);
             }
+            start = metrics.start();
         }
-        MinesUtil.println("processCell(" + x + ", " + y +
-                "),  numNeighborMines = " + numNeighborMines +
-                ", numCovered = " + numCovered +
-                " numMarkedAsMines = " + numMarkedAsMines +
-                " availableCells.size = " + availableCells.size());
-
-        // If we have all the mines account for, we can uncover the remaining cells.
-        if (numNeighborMines  == numMarkedAsMines) {
-            if (availableCells.size() > 0) {
-                MinesUtil.println("Marking " + availableCells.size() + " cells as uncovered.");
-                for (IntPair pair : availableCells) {
-                    MinesUtil.println("Cell: " + pair.x + " , " + pair.y);
-                }
-                toBeUncovered.addAll(availableCells);
-            }
-            availableCells.clear();
-        } else if (numNeighborMines == numCovered) {
-            // Mark all available cells as mines since this is a direct match..
-            MinesUtil.println("Marking all available cells as mines: " + availableCells.size());
-            for (IntPair pair : availableCells) {
-                MinesUtil.println("Cell: " + pair.x + " , " + pair.y);
-                markAsMine(pair.x, pair.y);
-                numMarkedAsMines ++;
-                // toBeProcessed.add(pair);
-                MinesUtil.computeNeighborList(pair.x, pair.y, gridSize, toBeProcessed);
-            }
-            availableCells.clear();
-        }
-
-        // If there are any remaining cells that are covered but are neither mines nor candidates
-        // for being uncovered, we compute a probability of these being mines. This is useful if we
-        // have to later pick a cell at random. We update the 'lowProbCells' list with such cells
-        // always maintaining the set of cells with the lowest probability.
-        int remainingMines = numNeighborMines - numMarkedAsMines;
-        if (remainingMines > 0 && availableCells.size() > 0) {
-            MinesUtil.println("remainingMines = " + remainingMines + " availableCells.size = " + availableCells.size());
-            double prob = (double) remainingMines / (double) availableCells.size();
-            MinesUtil.println("Prob of being a mine (among neighbors) = " + prob);
-            for (IntPair pair : availableCells) {
-                if (mineProb[pair.x][pair.y] > 1.0) { // if it is uninitialized.
-                    mineProb[pair.x][pair.y] = prob;
-                } else {
-                    mineProb[pair.x][pair.y] = Math.max(mineProb[pair.x][pair.y], prob); 
-                }
-                updateLowProbCells(pair, mineProb[pair.x][pair.y]);
+
+        // Step 1: Process all the numbered cells. When processing a cell, we look at the
+        // neighbors, how many of them can be mines and how many are uncovered. First mark the
+        // mines: if a cell has as many covered neighbors as neighboring mines, they are all
+        // mines. This does not depend on other marks, so one pass finds them all.
+        runOnBands(Band::markMines);
+
+        // With all the marks known, a cell whose neighboring mines are all marked proves its
+        // other covered neighbors safe. Otherwise it spreads its remaining mines evenly over
+        // them; a covered cell takes the highest such probability among its neighbors.
+        runOnBands(Band::evaluateConstraints);
+        runOnBands(Band::computeProbabilities);
+
+        // Merge the bands in order. We keep track of the "set" of lowest probability cells, so
+        // that we can choose among this in case we don't have a definite candidate for a mine.
+        // We use 'minMineProb' to keep track of the probability value and 'lowProbCells' to
+        // keep track of the set of these cells.
+        toBeUncovered.clear();
+        lowProbCells.clear();
+        minMineProb = HIGH_MINE_PROB_INT;
+        for (Band band : bands) {
+            minMineProb = Math.min(minMineProb, band.minMineProb);
+        }
+        for (Band band : bands) {
+            band.safeCells.drainTo(toBeUncovered);
+            if (band.minMineProb == minMineProb) {
+                band.lowProbCells.drainTo(lowProbCells);
             }
         }
+        if (metrics != null) metrics.stop(SolverMetrics.SWEEP, start);
     }
 
-    private void updateLowProbCells(IntPair cell, double prob) {
-        int probInt = (int) (prob * 1000.0);
-        if (probInt < minMineProb) {
-            MinesUtil.println("Creating new low prob cell set :" + probInt +
-                    " x = " + cell.x + " y = " + cell.y);
-            lowProbCells.clear();
-            lowProbCells.add(cell);
-            minMineProb = probInt;
-        } else if (probInt == minMineProb) {
-            MinesUtil.println("Adding low prob cell:" + cell.x + ", " + cell.y);
-            lowProbCells.add(cell);
+    /**
+     * Runs 'phase' on every band, in parallel if a pool is set, and returns when all are done.
+     */
+    private void runOnBands(Consumer<Band> phase) {
+        if (pool == null || bands.length == 1) {
+            for (Band band : bands) {
+                phase.accept(band);
+            }
         } else {
-            MinesUtil.println("Ignoring high prob cell:" + probInt);
+            pool.invoke(new BandRange(phase, 0, bands.length));
         }
     }
 
-    // Resets the values in the probability matrix to "unassigned" values, namely,
-    // UNASSIGNED_PROB.
-    private void resetProbabilityMatrix() {
-        for (int i = 0; i < gridSize; i ++) {
-            for (int j = 0; j < gridSize; j ++) {
-                mineProb[i][j] = UNASSIGNED_PROB;
+    /**
+     * Uncovers the given cell ('guess' if it was not proven safe). Returns true if the game has
+     * ended.
+     */
+    private boolean makeMove(int move, boolean guess, boolean allowConsoleOutput) {
+        int x = move / cols;
+        int y = move % cols;
+        if (allowConsoleOutput) System.out.println("Decided a move, uncover: " + x + " , " + y);
+        long start = metrics != null ? metrics.start() : 0;
+        boolean gameOver = board.exposeCell(x, y);
+        if (metrics != null) metrics.stop(SolverMetrics.EXPOSE, start);
+        if (stats != null) stats.recordMove(guess);
+        if (!gameOver) {
+            return false;
+        }
+        MinesUtil.println("Game ended.");
+        if (allowConsoleOutput) {
+            if (board.hasUserWon()) {
+                System.out.println("Solver won !");
+            } else {
+                System.out.println("Solver lost !");
             }
         }
+        return true;
     }
 
-    private int randomProbabilityLessCell(Minesweeper board) {
-        numProbLessCells = 0; // Cells which do not have a prob computed.
-        randomProblessCell = null;
-        double sumOfCellsWithProb = 0.0;
-        int numMarkedAsMines = 0;
-        for (int i = 0; i < gridSize; i ++) {
-            for (int j = 0; j < gridSize; j ++) {
-                if (isMine[i][j]) {
-                    sumOfCellsWithProb += 1.0;
-                    numMarkedAsMines ++;
-                } else if (snapshot[i][j] == -1) {
-                    if (mineProb[i][j] < 1.0) {
-                        sumOfCellsWithProb += mineProb[i][j];
-                    } else {
-                        // A cell for which we could not directly compute a probability.
-                        numProbLessCells ++;
-                        // Keep a cell chosen uniformly at random from such cells.
-                        if (randomProblessCell == null) {
-                            randomProblessCell = new IntPair(i, j);
-                        } else if (shouldReplace(numProbLessCells)) {
-                            randomProblessCell = new IntPair(i, j);
-                        }
-                    } 
-                }
+    /**
+     * Uncovers, one move at a time, every cell of 'toBeUncovered' that is still covered (a cell
+     * may be listed twice, or already uncovered by an earlier cascade). Returns true if the game
+     * has ended.
+     */
+    private boolean uncoverAll(boolean allowConsoleOutput) {
+        while (!toBeUncovered.isEmpty()) {
+            int move = toBeUncovered.poll();
+            if (board.isCovered(move / cols, move % cols) &&
+                    makeMove(move, false, allowConsoleOutput)) {
+                return true;
             }
         }
-        MinesUtil.println("Number we have marked as mines: " + numMarkedAsMines);
-        MinesUtil.println("Number of cells without prob:" + numProbLessCells);
-        double remainingMines = (double) board.getNumberOfMines() - sumOfCellsWithProb;
-        MinesUtil.println("Remaining mines:" + remainingMines); 
-        remainingMines = Math.max(remainingMines, 1.0); // Lower bound to 1.0
-        return (int) (1000.0 / (double) numProbLessCells);
+        return false;
     }
 
     /**
-     * Returns 1, if cell x, y is covered, 0 otherwise.
+     * Runs the exact probability engine on the current snapshot. Cells proven safe are added to
+     * 'toBeUncovered' and cells proven to be mines are marked. Returns the cell least likely to be
+     * a mine otherwise (a random probability-less cell if the cells off the frontier are the
+     * least likely), or NO_CELL if there is none. Cells whose component was too large to enumerate
+     * keep their heuristic probability.
      */
-    private int isCovered(int x, int y) {
-        if (!board.isValid(x, y)) return 0;
-        if (board.isCovered(x, y)) {
-            return 1;
-        } else {
-            return 0;
+    private int exactProbabilityMove() {
+        int numFrontier = collectFrontier();
+        exactEngine.compute(snapshotView, frontier, numFrontier,
+                board.getNumberOfMines() - numMarkedAsMines, numUnknownCells);
+
+        int best = NO_CELL;
+        double bestProb = 1.0;
+        for (int i = 0; i < exactEngine.getNumCells(); i ++) {
+            int cell = exactEngine.getCell(i);
+            double prob = exactEngine.getProbability(i);
+            if (prob == ExactProbabilityEngine.UNKNOWN_PROB) {
+                prob = mineProb[cell] < 1.0 ? mineProb[cell] : 1.0;
+            } else if (prob < EXACT_EPSILON) {
+                toBeUncovered.add(cell);
+                continue;
+            } else if (prob > 1.0 - EXACT_EPSILON) {
+                markAsMine(cell);
+                continue;
+            }
+            if (prob < bestProb) {
+                bestProb = prob;
+                best = cell;
+            }
+        }
+        double interiorProb = exactEngine.getInteriorProbability();
+        if (randomProblessCell != NO_CELL && interiorProb != ExactProbabilityEngine.UNKNOWN_PROB &&
+                (best == NO_CELL || interiorProb < bestProb)) {
+            best = randomProblessCell;
         }
+        return best;
     }
 
     /**
-     * Returns 1, if cell x, y is marked as a mine, 0 otherwise.
+     * Runs the pattern deduction engine on the current snapshot, like linearDeductions().
      */
-    private int isMarkedAsMine(int x, int y) {
-        return (isMine[x][y] ? 1 : 0);
+    private boolean patternDeductions() {
+        int numFrontier = collectFrontier();
+        patternEngine.compute(snapshotView, frontier, numFrontier);
+        for (int i = 0; i < patternEngine.getNumSafeCells(); i ++) {
+            toBeUncovered.add(patternEngine.getSafeCell(i));
+        }
+        for (int i = 0; i < patternEngine.getNumMineCells(); i ++) {
+            markAsMine(patternEngine.getMineCell(i));
+        }
+        return patternEngine.getNumMineCells() > 0;
     }
 
     /**
-     * Marks a given cell as a (potential) mine internally for the solver.
+     * Runs the linear deduction engine on the current snapshot. Cells proven safe are added to
+     * 'toBeUncovered' and cells proven to be mines are marked. Returns true if any mine was
+     * found.
+     */
+    private boolean linearDeductions() {
+        int numFrontier = collectFrontier();
+        linearEngine.compute(snapshotView, frontier, numFrontier);
+        for (int i = 0; i < linearEngine.getNumSafeCells(); i ++) {
+            toBeUncovered.add(linearEngine.getSafeCell(i));
+        }
+        for (int i = 0; i < linearEngine.getNumMineCells(); i ++) {
+            markAsMine(linearEngine.getMineCell(i));
+        }
+        return linearEngine.getNumMineCells() > 0;
+    }
+
+    /**
+     * Stores the frontier (covered cells not marked as mines, next to a numbered cell) in
+     * 'frontier' and returns its size. Also counts numUnknownCells and numMarkedAsMines.
+     */
+    private int collectFrontier() {
+        int numFrontier = 0;
+        numUnknownCells = 0;
+        numMarkedAsMines = 0;
+        for (int index = 0; index < snapshot.length; index ++) {
+            if (isMine[index]) {
+                numMarkedAsMines ++;
+            } else if (snapshot[index] == -1) {
+                numUnknownCells ++;
+                if (hasNumberedNeighbor(index)) {
+                    if (numFrontier == frontier.length) {
+                        frontier = Arrays.copyOf(frontier, 2 * numFrontier);
+                    }
+                    frontier[numFrontier ++] = index;
+                }
+            }
+        }
+        return numFrontier;
+    }
+
+    private boolean hasNumberedNeighbor(int index) {
+        int numNeighbors = MinesUtil.neighborsOf(index, rows, cols, neighbors);
+        for (int n = 0; n < numNeighbors; n ++) {
+            if (snapshot[neighbors[n]] > 0) return true;
+        }
+        return false;
+    }
+
+    // The solver's knowledge, as seen by the exact probability engine.
+    private final ExactProbabilityEngine.View snapshotView = new ExactProbabilityEngine.View() {
+        @Override
+        public int getRows() {
+            return rows;
+        }
+
+        @Override
+        public int getCols() {
+            return cols;
+        }
+
+        @Override
+        public int getValue(int index) {
+            return snapshot[index];
+        }
+
+        @Override
+        public boolean isMarkedAsMine(int index) {
+            return isMine[index];
+        }
+    };
+
+    /**
+     * Picks a cell uniformly at random among the probability-less ones (covered, not marked,
+     * without a numbered neighbor giving it a probability), from the counts of the bands: one
+     * random draw, and a scan of a single band. Returns the probability of such a cell in 1/1000
+     * units.
      */
-    private void markAsMine(int x, int y) {
-        isMine[x][y] = true;
+    private int randomProbabilityLessCell() {
+        numProbLessCells = 0;
+        for (Band band : bands) {
+            numProbLessCells += band.numProbless;
+        }
+        randomProblessCell = NO_CELL;
+        if (numProbLessCells > 0) {
+            int k = random.nextInt(numProbLessCells);
+            for (Band band : bands) {
+                if (k < band.numProbless) {
+                    randomProblessCell = band.problessCell(k);
+                    break;
+                }
+                k -= band.numProbless;
+            }
+        }
+        if (MinesUtil.DBG) MinesUtil.println("Number of cells without prob:" + numProbLessCells);
+        return (int) (1000.0 / (double) numProbLessCells);
     }
 
-    // An online algorithm to choose a node uniformly at random with prob 1/N as N increases.
-    // Returns true, if the previous selection (for N-1) should be replaced with the newly seen
-    // node, false otherwise.
-    private boolean shouldReplace(int n) {
-        return random.nextInt(n) > n - 2;
+    /**
+     * Marks a given cell as a (potential) mine internally for the solver.
+     */
+    private void markAsMine(int index) {
+        isMine[index] = true;
     }
 
     private void userInterrupt(BufferedReader br) {
@@ -332,5 +507,288 @@ class Solver {
         }
     }
 
-}
+    /**
+     * The cells [from, to) of a band of whole rows, with the band's share of the results of
+     * analyzeBoard. The phases only write the state of the band's own cells, apart from
+     * markMines, which may also mark (the same way) the cells of neighboring bands.
+     */
+    private class Band {
+        final int from;
+        final int to;
+        Band previous; // The bands of the rows above and below; null at the edges of the grid.
+        Band next;
+        // The band's numbered cells that are not settled, in index order, so that the phases
+        // after refreshSnapshot do not scan the whole band. markMines lists the covered
+        // neighbors of cell i in coveredNeighbors[8 * i, 8 * i + numCovered[i]).
+        int[] numberedCells = new int[64];
+        int numNumbered;
+        int[] previousNumbered = new int[64]; // The last refreshSnapshot's list, while refreshing.
+        long snapshotVersion = -1; // Board version the band's snapshot is up to date with.
+        int[] coveredNeighbors = new int[8 * 64];
+        byte[] numCovered = new byte[64];
+        final IntQueue safeCells = new IntQueue(); // Proven safe, in cell index order.
+        final IntQueue lowProbCells = new IntQueue(); // Cells of probability minMineProb.
+        int minMineProb;
+        int numProbless; // Covered, unmarked cells without a probability.
+        final IntQueue assignedCells = new IntQueue(); // The band's cells given a probability.
+        // Scratch space for the neighbors of a cell, and for those of one of them.
+        final int[] neighbors = new int[8];
+        final int[] innerNeighbors = new int[8];
+
+        Band(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Refreshes the band's snapshot, collects its numbered cells that are not settled and
+         * resets the probabilities the last computeProbabilities gave (only to covered cells
+         * next to a constraint, listed in assignedCells), so it can fill them in again. Only the
+         * tiles of the board changed since the last refresh are copied and scanned; elsewhere,
+         * the numbered cells are those of the last list that are still not settled (a numbered
+         * cell stays numbered, and a settled one stays settled). So the cost follows the changes
+         * and the frontier, not the area of the band.
+         */
+        void refreshSnapshot() {
+            int[] snapshot = Solver.this.snapshot;
+            double[] mineProb = Solver.this.mineProb;
+            while (!assignedCells.isEmpty()) {
+                mineProb[assignedCells.poll()] = UNASSIGNED_PROB;
+            }
+            int[] previous = numberedCells;
+            int numPrevious = numNumbered;
+            numberedCells = previousNumbered.length >= previous.length ? previousNumbered :
+                    new int[previous.length];
+            previousNumbered = previous;
+            numNumbered = 0;
+            int p = 0;
+            int lastTile = (to + (1 << Minesweeper.TILE_SHIFT) - 1) >> Minesweeper.TILE_SHIFT;
+            int tile = from >> Minesweeper.TILE_SHIFT;
+            while (true) {
+                tile = board.nextChangedTile(snapshotVersion, tile, lastTile);
+                int changedFrom = Math.max(from, Math.min(to, tile << Minesweeper.TILE_SHIFT));
+                for (; p < numPrevious && previous[p] < changedFrom; p ++) {
+                    if (constraintProb[previous[p]] != SETTLED) addNumbered(previous[p]);
+                }
+                if (tile == lastTile) break;
+                int changedTo = Math.min(to, (tile + 1) << Minesweeper.TILE_SHIFT);
+                board.updateUncoveredCellSnapshot(snapshot, changedFrom, changedTo);
+                for (int index = changedFrom; index < changedTo; index ++) {
+                    if (snapshot[index] > 0 && constraintProb[index] != SETTLED) {
+                        addNumbered(index);
+                    }
+                }
+                while (p < numPrevious && previous[p] < changedTo) p ++;
+                tile ++;
+            }
+            snapshotVersion = board.getVersion();
+        }
+
+        private void addNumbered(int index) {
+            if (numNumbered == numberedCells.length) {
+                numberedCells = Arrays.copyOf(numberedCells, 2 * numNumbered);
+            }
+            numberedCells[numNumbered ++] = index;
+        }
 
+        /**
+         * Marks the mines, and lists the covered neighbors of the numbered cells.
+         */
+        void markMines() {
+            int[] snapshot = Solver.this.snapshot;
+            if (coveredNeighbors.length < 8 * numberedCells.length) {
+                coveredNeighbors = new int[8 * numberedCells.length];
+                numCovered = new byte[numberedCells.length];
+            }
+            for (int i = 0; i < numNumbered; i ++) {
+                int index = numberedCells[i];
+                constraintProb[index] = 0.0;
+                int numNeighbors = MinesUtil.neighborsOf(index, rows, cols, neighbors);
+                // Store every neighbor, but only move past the covered ones (-1 is the only
+                // negative value), which avoids a hard to predict branch per neighbor.
+                int first = 8 * i;
+                int count = 0;
+                for (int n = 0; n < numNeighbors; n ++) {
+                    int neighbor = neighbors[n];
+                    coveredNeighbors[first + count] = neighbor;
+                    count += snapshot[neighbor] >>> 31;
+                }
+                numCovered[i] = (byte) count;
+                if (count == snapshot[index]) {
+                    if (MinesUtil.DBG) MinesUtil.println("Marking all covered neighbors of " +
+                            index + " as mines: " + count);
+                    for (int c = 0; c < count; c ++) {
+                        markAsMine(coveredNeighbors[first + c]);
+                    }
+                }
+            }
+        }
+
+        void evaluateConstraints() {
+            boolean[] isMine = Solver.this.isMine;
+            safeCells.clear();
+            for (int i = 0; i < numNumbered; i ++) {
+                int index = numberedCells[i];
+                int first = 8 * i;
+                int last = first + numCovered[i];
+                int numMarkedAsMines = 0;
+                for (int c = first; c < last; c ++) {
+                    if (isMine[coveredNeighbors[c]]) numMarkedAsMines ++;
+                }
+                int numAvailable = numCovered[i] - numMarkedAsMines;
+                int remainingMines = snapshot[index] - numMarkedAsMines;
+                if (remainingMines == 0) {
+                    // All the mines are accounted for, we can uncover the remaining cells.
+                    for (int c = first; c < last; c ++) {
+                        if (!isMine[coveredNeighbors[c]]) safeCells.add(coveredNeighbors[c]);
+                    }
+                } else if (remainingMines > 0 && numAvailable > 0) {
+                    constraintProb[index] = (double) remainingMines / (double) numAvailable;
+                }
+                if (numAvailable == 0) constraintProb[index] = SETTLED;
+                if (MinesUtil.DBG) MinesUtil.println("Cell " + index + ": numNeighborMines = " +
+                        snapshot[index] + " numMarkedAsMines = " + numMarkedAsMines +
+                        " numAvailable = " + numAvailable);
+            }
+        }
+
+        /**
+         * Sets the probability of the band's covered cells next to a constraint to the highest
+         * one among their constraints (which may be in the rows next to the band), and fills
+         * 'lowProbCells'. As in the original sequential sweep, the constraints are applied in
+         * cell index order and each offers its cells for 'lowProbCells' with the highest
+         * probability among their constraints so far, not among all of them. This favors cells
+         * first reached by a low probability constraint, which wins more games than ranking by
+         * the final probabilities. mineProb of the band's cells holds these running maximums.
+         * Finally counts the band's cells left without a probability.
+         */
+        void computeProbabilities() {
+            lowProbCells.clear();
+            minMineProb = HIGH_MINE_PROB_INT;
+            // The constraints of the row above the band come before all of the band's own.
+            if (previous != null) {
+                for (int i = previous.numNumbered - 1;
+                        i >= 0 && previous.numberedCells[i] >= from - cols; i --) {
+                    applyConstraint(previous, i, false);
+                }
+            }
+            for (int i = 0; i < numNumbered; i ++) {
+                applyConstraint(this, i, true);
+            }
+            if (next != null) {
+                for (int i = 0; i < next.numNumbered && next.numberedCells[i] < to + cols;
+                        i ++) {
+                    applyConstraint(next, i, false);
+                }
+            }
+            numProbless = BoardKernels.INSTANCE.countProbless(snapshot, isMine, mineProb, from,
+                    to);
+        }
+
+        /**
+         * Returns the k-th probability-less cell of the band, 0 <= k < numProbless. Whole blocks
+         * of cells before it are skipped by their count.
+         */
+        int problessCell(int k) {
+            int index = from;
+            for (; index + PROBLESS_BLOCK <= to; index += PROBLESS_BLOCK) {
+                int count = BoardKernels.INSTANCE.countProbless(snapshot, isMine, mineProb, index,
+                        index + PROBLESS_BLOCK);
+                if (k < count) break;
+                k -= count;
+            }
+            for (; ; index ++) {
+                if (isProbless(index) && k -- == 0) return index;
+            }
+        }
+
+        private boolean isProbless(int index) {
+            return snapshot[index] == -1 & !isMine[index] & mineProb[index] > 1.0;
+        }
+
+        /**
+         * Applies the constraint of numbered cell i of 'owner' (this band or a neighboring one)
+         * to its available neighbors in this band and, for one of the band's own constraints
+         * ('offer'), offers all of its available neighbors for 'lowProbCells'.
+         */
+        private void applyConstraint(Band owner, int i, boolean offer) {
+            int index = owner.numberedCells[i];
+            double prob = constraintProb[index];
+            if (prob <= 0.0) return; // No probability, or SETTLED.
+            double[] mineProb = Solver.this.mineProb;
+            for (int c = 8 * i; c < 8 * i + owner.numCovered[i]; c ++) {
+                int cell = owner.coveredNeighbors[c];
+                if (isMine[cell]) continue;
+                double probSoFar;
+                if (cell >= from && cell < to) {
+                    if (mineProb[cell] > 1.0) {
+                        mineProb[cell] = prob;
+                        assignedCells.add(cell);
+                    } else if (prob > mineProb[cell]) {
+                        mineProb[cell] = prob;
+                    }
+                    probSoFar = mineProb[cell];
+                } else if (offer) {
+                    probSoFar = maxConstraintProb(cell, index);
+                } else {
+                    continue;
+                }
+                if (offer) updateLowProbCells(cell, probSoFar);
+            }
+        }
+
+        /**
+         * Returns the highest probability given to 'cell' (of another band) by the constraints
+         * of its neighbors with index up to 'last'.
+         */
+        private double maxConstraintProb(int cell, int last) {
+            double prob = 0.0;
+            int numNeighbors = MinesUtil.neighborsOf(cell, rows, cols, innerNeighbors);
+            for (int n = 0; n < numNeighbors; n ++) {
+                int neighbor = innerNeighbors[n];
+                if (neighbor <= last && constraintProb[neighbor] > prob) {
+                    prob = constraintProb[neighbor];
+                }
+            }
+            return prob;
+        }
+
+        private void updateLowProbCells(int cell, double prob) {
+            int probInt = (int) (prob * 1000.0);
+            if (probInt < minMineProb) {
+                lowProbCells.clear();
+                lowProbCells.add(cell);
+                minMineProb = probInt;
+            } else if (probInt == minMineProb) {
+                lowProbCells.add(cell);
+            }
+        }
+    }
+
+    /**
+     * Runs a phase on the bands [from, to), splitting the range across the pool.
+     */
+    private class BandRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Consumer<Band> phase;
+        private final int from;
+        private final int to;
+
+        BandRange(Consumer<Band> phase, int from, int to) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                phase.accept(bands[from]);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BandRange(phase, from, mid), new BandRange(phase, mid, to));
+            }
+        }
+    }
+}
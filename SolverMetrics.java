@@ -0,0 +1,238 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters and timers for the hot paths of a solver, one instance per game. A solver given an
+ * instance times each phase of its moves (snapshot refresh, cell sweep, dirty cell propagation,
+ * deduction engines, guess selection and exposeCell) with two nanoTime calls per phase, and
+ * counts the numbered cells it processes. A solver without one (the default) only pays a null
+ * check per phase.
+ *
+ * At the end of a game, publish() adds the game's figures to process-wide totals, which
+ * summary() formats and startReporting() prints periodically, and commits a JFR event with them
+ * (minesweeper.SolverGame). While a JFR recording runs, the totals are also emitted every second
+ * as minesweeper.SolverMetrics events.
+ */
+class SolverMetrics {
+    // The phases of a move. Solver's sweep covers the processing of every numbered cell, while
+    // IncrementalSolver only re-evaluates the cells around the last move (propagation) and reads
+    // the cells that move uncovered (snapshot).
+    static final int SNAPSHOT = 0;
+    static final int SWEEP = 1;
+    static final int PROPAGATION = 2;
+    // PatternDeductionEngine, LinearDeductionEngine and ExactProbabilityEngine.
+    static final int DEDUCTION = 3;
+    static final int GUESS = 4;
+    static final int EXPOSE = 5;
+    static final int NUM_PHASES = 6;
+    private static final String[] PHASE_NAMES = {"snapshot", "sweep", "propagation", "deduction",
+            "guess", "exposeCell"};
+
+    private static volatile boolean enabled;
+
+    // Totals of all the published games, updated concurrently by the batch workers.
+    private static final LongAdder totalGames = new LongAdder();
+    private static final LongAdder totalCellsProcessed = new LongAdder();
+    private static final LongAdder[] totalNanos = new LongAdder[NUM_PHASES];
+    private static final LongAdder[] totalCalls = new LongAdder[NUM_PHASES];
+
+    static {
+        for (int phase = 0; phase < NUM_PHASES; phase ++) {
+            totalNanos[phase] = new LongAdder();
+            totalCalls[phase] = new LongAdder();
+        }
+    }
+
+    private final long[] nanos = new long[NUM_PHASES];
+    private final long[] calls = new long[NUM_PHASES];
+    private long cellsProcessed;
+    private final GameEvent event = new GameEvent();
+
+    /**
+     * Turns on metrics for the games started from now on (see SolverOptions).
+     */
+    static synchronized void enable() {
+        if (enabled) return;
+        FlightRecorder.addPeriodicEvent(TotalsEvent.class, SolverMetrics::emitTotals);
+        enabled = true;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    SolverMetrics() {
+        event.begin();
+    }
+
+    /**
+     * Returns the start time of a phase, to pass to stop().
+     */
+    long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a run of 'phase' that started at 'start'.
+     */
+    void stop(int phase, long start) {
+        nanos[phase] += System.nanoTime() - start;
+        calls[phase] ++;
+    }
+
+    /**
+     * Counts numbered cells (re-)evaluated by a sweep or by propagation.
+     */
+    void countCells(int numCells) {
+        cellsProcessed += numCells;
+    }
+
+    /**
+     * Adds this game's figures to the totals and commits its JFR event. Called once, when the
+     * game on 'board' has ended.
+     */
+    void publish(Minesweeper board) {
+        totalGames.increment();
+        totalCellsProcessed.add(cellsProcessed);
+        for (int phase = 0; phase < NUM_PHASES; phase ++) {
+            totalNanos[phase].add(nanos[phase]);
+            totalCalls[phase].add(calls[phase]);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = board.getRows();
+            event.cols = board.getCols();
+            event.mines = board.getNumberOfMines();
+            event.won = board.hasUserWon();
+            event.moves = calls[EXPOSE];
+            event.cellsProcessed = cellsProcessed;
+            event.snapshot = nanos[SNAPSHOT];
+            event.sweep = nanos[SWEEP];
+            event.propagation = nanos[PROPAGATION];
+            event.deduction = nanos[DEDUCTION];
+            event.guess = nanos[GUESS];
+            event.exposeCell = nanos[EXPOSE];
+            event.commit();
+        }
+    }
+
+    /**
+     * Formats the totals of the games published so far, one line per phase.
+     */
+    static String summary() {
+        long allNanos = 0;
+        for (int phase = 0; phase < NUM_PHASES; phase ++) {
+            allNanos += totalNanos[phase].sum();
+        }
+        StringBuilder summary = new StringBuilder();
+        summary.append("Solver metrics: games = ").append(totalGames.sum())
+                .append(", cells processed = ").append(totalCellsProcessed.sum()).append('\n');
+        summary.append(String.format("  %-12s %12s %12s %12s %8s%n", "phase", "calls",
+                "total ms", "mean us", "share %"));
+        for (int phase = 0; phase < NUM_PHASES; phase ++) {
+            long phaseNanos = totalNanos[phase].sum();
+            long phaseCalls = totalCalls[phase].sum();
+            summary.append(String.format("  %-12s %12d %12.1f %12.3f %8.1f%n", PHASE_NAMES[phase],
+                    phaseCalls, phaseNanos / 1e6,
+                    phaseCalls == 0 ? 0.0 : phaseNanos / 1e3 / phaseCalls,
+                    allNanos == 0 ? 0.0 : 100.0 * phaseNanos / allNanos));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Prints summary() every 'periodSeconds' seconds from a daemon thread, until the returned
+     * executor is shut down.
+     */
+    static ScheduledExecutorService startReporting(int periodSeconds) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "solver-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> System.out.print(summary()), periodSeconds,
+                periodSeconds, TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    private static void emitTotals() {
+        TotalsEvent event = new TotalsEvent();
+        event.games = totalGames.sum();
+        event.cellsProcessed = totalCellsProcessed.sum();
+        event.snapshot = totalNanos[SNAPSHOT].sum();
+        event.sweep = totalNanos[SWEEP].sum();
+        event.propagation = totalNanos[PROPAGATION].sum();
+        event.deduction = totalNanos[DEDUCTION].sum();
+        event.guess = totalNanos[GUESS].sum();
+        event.exposeCell = totalNanos[EXPOSE].sum();
+        event.commit();
+    }
+
+    @Name("minesweeper.SolverGame")
+    @Label("Solver Game")
+    @Category("Minesweeper")
+    @StackTrace(false)
+    @Description("A game played by a solver, with the time spent in each phase of its moves")
+    static class GameEvent extends Event {
+        @Label("Rows")
+        int rows;
+        @Label("Columns")
+        int cols;
+        @Label("Mines")
+        int mines;
+        @Label("Won")
+        boolean won;
+        @Label("Moves")
+        long moves;
+        @Label("Cells Processed")
+        long cellsProcessed;
+        @Label("Snapshot") @Timespan(Timespan.NANOSECONDS)
+        long snapshot;
+        @Label("Sweep") @Timespan(Timespan.NANOSECONDS)
+        long sweep;
+        @Label("Propagation") @Timespan(Timespan.NANOSECONDS)
+        long propagation;
+        @Label("Deduction") @Timespan(Timespan.NANOSECONDS)
+        long deduction;
+        @Label("Guess") @Timespan(Timespan.NANOSECONDS)
+        long guess;
+        @Label("Expose Cell") @Timespan(Timespan.NANOSECONDS)
+        long exposeCell;
+    }
+
+    @Name("minesweeper.SolverMetrics")
+    @Label("Solver Metrics")
+    @Category("Minesweeper")
+    @StackTrace(false)
+    @Description("Totals of the games published so far")
+    @Period("1 s")
+    static class TotalsEvent extends Event {
+        @Label("Games")
+        long games;
+        @Label("Cells Processed")
+        long cellsProcessed;
+        @Label("Snapshot") @Timespan(Timespan.NANOSECONDS)
+        long snapshot;
+        @Label("Sweep") @Timespan(Timespan.NANOSECONDS)
+        long sweep;
+        @Label("Propagation") @Timespan(Timespan.NANOSECONDS)
+        long propagation;
+        @Label("Deduction") @Timespan(Timespan.NANOSECONDS)
+        long deduction;
+        @Label("Guess") @Timespan(Timespan.NANOSECONDS)
+        long guess;
+        @Label("Expose Cell") @Timespan(Timespan.NANOSECONDS)
+        long exposeCell;
+    }
+}
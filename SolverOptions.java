@@ -0,0 +1,165 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+/**
+ * Selects and configures the solver that plays a game, so the console and the batch runner
+ * construct solvers the same way. This is the default MoveStrategy.
+ */
+class SolverOptions implements MoveStrategy {
+    private static final String DEFAULT_SPEC = "default";
+    private static final String SPEC_SEPARATOR = "+";
+
+    private static final String INCREMENTAL_CMD = "--incremental";
+    private static final String SWEEP_SAFE_CMD = "--sweepSafe";
+    private static final String EXACT_CMD = "--exact";
+    private static final String LINEAR_CMD = "--linear";
+    private static final String PATTERNS_CMD = "--patterns";
+    private static final String PARALLEL_CMD = "--parallel";
+
+    boolean incremental = false; // Use IncrementalSolver instead of Solver.
+    boolean sweepAllSafe = false; // Uncover every proven safe cell in a single solver iteration.
+    boolean exactProbabilities = false; // Guess with ExactProbabilityEngine.
+    boolean linearDeductions = false; // Before guessing, look for LinearDeductionEngine deductions.
+    boolean patternDeductions = false; // Before guessing, look for PatternDeductionEngine ones.
+    boolean parallel = false; // Let Solver analyze the board on all cores.
+    String stateFile = null; // Memory-map IncrementalSolver's per-cell state to this file.
+    boolean resumeStateFile = false; // Resume the solve paused in stateFile, if it exists.
+    long maxMoves = Long.MAX_VALUE; // Pause IncrementalSolver after this many moves.
+
+    /**
+     * Applies a solver command line flag. Returns false if 'arg' is not one.
+     */
+    boolean parseFlag(String arg) {
+        String message = applyFlag(arg);
+        if (message == null) return false;
+        System.out.println(message);
+        return true;
+    }
+
+    /**
+     * Returns the options given by a strategy spec: "default", or solver flags without their
+     * dashes joined by '+', e.g. "incremental+linear+exact". Throws IllegalArgumentException for
+     * an unknown flag.
+     */
+    static SolverOptions fromSpec(String spec) {
+        SolverOptions options = new SolverOptions();
+        if (spec.equals(DEFAULT_SPEC)) return options;
+        for (String flag : spec.split(Pattern.quote(SPEC_SEPARATOR))) {
+            if (options.applyFlag("--" + flag) == null) {
+                throw new IllegalArgumentException("Unknown solver flag in strategy: " + flag);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Applies a solver flag and returns what it does, or returns null if 'arg' is not one.
+     */
+    private String applyFlag(String arg) {
+        if (arg.equals(INCREMENTAL_CMD)) {
+            incremental = true;
+            return "Using the incremental solver.";
+        } else if (arg.equals(SWEEP_SAFE_CMD)) {
+            sweepAllSafe = true;
+            return "Uncovering all safe cells per solver iteration.";
+        } else if (arg.equals(EXACT_CMD)) {
+            exactProbabilities = true;
+            return "Guessing with exact probabilities.";
+        } else if (arg.equals(LINEAR_CMD)) {
+            linearDeductions = true;
+            return "Combining constraints with linear deductions.";
+        } else if (arg.equals(PATTERNS_CMD)) {
+            patternDeductions = true;
+            return "Solving local patterns, with a pattern cache.";
+        } else if (arg.equals(PARALLEL_CMD)) {
+            parallel = true;
+            return "Analyzing the board in parallel.";
+        }
+        return null;
+    }
+
+    /**
+     * Runs the configured solver on 'board' until the game ends.
+     */
+    void solve(Minesweeper board, long seed, BufferedReader br, boolean allowConsoleOutput) {
+        solve(board, seed, br, allowConsoleOutput, null);
+    }
+
+    /**
+     * Same as above, counting the moves into 'stats' (if not null).
+     */
+    @Override
+    public void solve(Minesweeper board, long seed, BufferedReader br, boolean allowConsoleOutput,
+            GameStats stats) {
+        if (stats != null) stats.start();
+        SolverMetrics metrics = SolverMetrics.isEnabled() ? new SolverMetrics() : null;
+        if (incremental && stateFile != null) {
+            try (CellStateStore cells = openStateFile(board)) {
+                if (cells.getRows() != board.getRows() || cells.getCols() != board.getCols()) {
+                    System.out.println("Solver state file is for a grid of " + cells.getRows() +
+                            " x " + cells.getCols() + ", not " + board.getRows() + " x " +
+                            board.getCols());
+                } else {
+                    solveIncremental(board, seed, br, allowConsoleOutput, stats, metrics, cells);
+                }
+            } catch (IOException e) {
+                System.out.println("Error mapping solver state file: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error resuming solver state: " + e.getMessage());
+            }
+        } else if (incremental) {
+            solveIncremental(board, seed, br, allowConsoleOutput, stats, metrics,
+                    new CellStateStore(board.getRows(), board.getCols()));
+        } else {
+            Solver solver = new Solver(board, seed);
+            solver.setSweepAllSafe(sweepAllSafe);
+            solver.setParallel(parallel);
+            solver.setExactProbabilities(exactProbabilities);
+            solver.setLinearDeductions(linearDeductions);
+            solver.setPatternDeductions(patternDeductions);
+            solver.setStats(stats);
+            solver.setMetrics(metrics);
+            solver.solve(br, allowConsoleOutput);
+        }
+        if (metrics != null) metrics.publish(board);
+    }
+
+    /**
+     * Resumes the solver state in 'stateFile' if asked to and it exists (for a game loaded at, or
+     * after, the point it was paused), or else creates it for a new solve of 'board'.
+     */
+    private CellStateStore openStateFile(Minesweeper board) throws IOException {
+        if (resumeStateFile && Files.exists(Paths.get(stateFile))) {
+            System.out.println("Resuming the solver state in: " + stateFile);
+            return CellStateStore.open(stateFile);
+        }
+        return CellStateStore.create(stateFile, board.getRows(), board.getCols());
+    }
+
+    private void solveIncremental(Minesweeper board, long seed, BufferedReader br,
+            boolean allowConsoleOutput, GameStats stats, SolverMetrics metrics,
+            CellStateStore cells) {
+        IncrementalSolver solver = new IncrementalSolver(board, seed, cells);
+        solver.setExactProbabilities(exactProbabilities);
+        solver.setLinearDeductions(linearDeductions);
+        solver.setPatternDeductions(patternDeductions);
+        solver.setMaxMoves(maxMoves);
+        solver.setStats(stats);
+        solver.setMetrics(metrics);
+        solver.solve(br, allowConsoleOutput);
+    }
+
+    @Override
+    public String describe() {
+        StringBuilder description = new StringBuilder(incremental ? "incremental" : "default");
+        if (sweepAllSafe && !incremental) description.append(", sweep all safe");
+        if (parallel && !incremental) description.append(", parallel analysis");
+        if (patternDeductions) description.append(", pattern cache");
+        if (linearDeductions) description.append(", linear deductions");
+        if (exactProbabilities) description.append(", exact probabilities");
+        return description.toString();
+    }
+}
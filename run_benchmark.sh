@@ -1,5 +1,9 @@
 #!/bin/bash
 
+# Preferred: play all the games inside a single JVM.
+#   java MinesConsole --gridSize 10 --mines 10 --games 100000
+# The legacy one-JVM-per-game loop below is kept for comparison with older result.log files.
+
 #echo > result.log
 #for i in $(seq 1 99999); do 
 #    java MinesConsole --gridSize 10 --mines 10 --noconsole | grep "Result" >> result.log
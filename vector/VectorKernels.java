@@ -0,0 +1,128 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BoardKernels on the incubating Vector API (jdk.incubator.vector). Built and loaded only on
+ * request, see BoardKernels. Each loop handles whole vectors, then finishes the rest of its range
+ * with scalar code.
+ *
+ * The shapes are the ones JDK 17's C2 compiles to vector instructions rather than to boxed
+ * vector objects: the cell bytes widen to ints 8 at a time (64 to 256 bits), and the probability
+ * count works on lanes of 0 / 1 ints instead of masks, with the doubles of 8 cells in one 512 bit
+ * vector. It needs 256 bit vectors (the constructor throws otherwise, so that BoardKernels falls
+ * back to ScalarKernels), and 512 bit ones for countProbless, which is scalar without them.
+ */
+final class VectorKernels implements BoardKernels {
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+    // The bytes (cells, or isMine flags) of one vector of INTS.
+    private static final VectorSpecies<Byte> BYTES_OF_INTS = ByteVector.SPECIES_64;
+    // The probabilities of one vector of INTS.
+    private static final VectorSpecies<Double> DOUBLES_OF_INTS = DoubleVector.SPECIES_512;
+    private static final boolean WIDE_DOUBLES =
+            DoubleVector.SPECIES_PREFERRED.vectorBitSize() >= DOUBLES_OF_INTS.vectorBitSize();
+    private static final long ONE_BITS = Double.doubleToRawLongBits(1.0);
+
+    private final ScalarKernels scalar = new ScalarKernels();
+
+    VectorKernels() {
+        if (IntVector.SPECIES_PREFERRED.vectorBitSize() < INTS.vectorBitSize()) {
+            throw new UnsupportedOperationException("No " + INTS.vectorBitSize() +
+                    " bit vectors");
+        }
+    }
+
+    @Override
+    public void sumRowMines(byte[] grid, int rowStart, int cols, byte[] mines, byte[] sums) {
+        int j = 0;
+        for (; j < BYTES.loopBound(cols); j += BYTES.length()) {
+            ByteVector.fromArray(BYTES, grid, rowStart + j).and(Cell.MINE)
+                    .lanewise(VectorOperators.LSHR, 4).intoArray(mines, j);
+        }
+        for (; j < cols; j ++) {
+            mines[j] = (byte) ((grid[rowStart + j] & Cell.MINE) >> 4);
+        }
+        int last = cols - 1;
+        // Sums j in [1, last), reading mines [j - 1, j + 1].
+        j = 1;
+        for (; j + BYTES.length() <= last; j += BYTES.length()) {
+            ByteVector.fromArray(BYTES, mines, j - 1)
+                    .add(ByteVector.fromArray(BYTES, mines, j))
+                    .add(ByteVector.fromArray(BYTES, mines, j + 1)).intoArray(sums, j);
+        }
+        for (; j < last; j ++) {
+            sums[j] = (byte) (mines[j - 1] + mines[j] + mines[j + 1]);
+        }
+        if (last == 0) {
+            sums[0] = mines[0];
+        } else {
+            sums[0] = (byte) (mines[0] + mines[1]);
+            sums[last] = (byte) (mines[last - 1] + mines[last]);
+        }
+    }
+
+    @Override
+    public void addNeighborCounts(byte[] grid, int rowStart, int cols, byte[] above,
+            byte[] current, byte[] below) {
+        int j = 0;
+        for (; j < BYTES.loopBound(cols); j += BYTES.length()) {
+            ByteVector cells = ByteVector.fromArray(BYTES, grid, rowStart + j);
+            ByteVector counts = ByteVector.fromArray(BYTES, above, j)
+                    .add(ByteVector.fromArray(BYTES, current, j))
+                    .add(ByteVector.fromArray(BYTES, below, j))
+                    .sub(cells.and(Cell.MINE).lanewise(VectorOperators.LSHR, 4));
+            cells.or(counts).intoArray(grid, rowStart + j);
+        }
+        for (; j < cols; j ++) {
+            byte cell = grid[rowStart + j];
+            grid[rowStart + j] = (byte) (cell |
+                    (above[j] + current[j] + below[j] - ((cell & Cell.MINE) >> 4)));
+        }
+    }
+
+    @Override
+    public void snapshotValues(byte[] grid, int[] snapshot, int from, int to) {
+        int index = from;
+        for (; index + INTS.length() <= to; index += INTS.length()) {
+            IntVector cells = (IntVector) ByteVector.fromArray(BYTES_OF_INTS, grid, index)
+                    .castShape(INTS, 0);
+            // The count, or -1 (all ones) if the covered bit is set.
+            IntVector covered = cells.lanewise(VectorOperators.LSHR, 5).and(1).neg();
+            cells.and(Cell.COUNT_MASK).or(covered).intoArray(snapshot, index);
+        }
+        scalar.snapshotValues(grid, snapshot, index, to);
+    }
+
+    @Override
+    public int countProbless(int[] snapshot, boolean[] isMine, double[] mineProb, int from,
+            int to) {
+        if (!WIDE_DOUBLES) return scalar.countProbless(snapshot, isMine, mineProb, from, to);
+        IntVector counts = IntVector.zero(INTS);
+        int index = from;
+        for (; index + INTS.length() <= to; index += INTS.length()) {
+            // 1 for a covered cell: -1 is the only negative snapshot value.
+            IntVector covered = IntVector.fromArray(INTS, snapshot, index)
+                    .lanewise(VectorOperators.LSHR, 31);
+            IntVector marked = (IntVector) ByteVector.fromBooleanArray(BYTES_OF_INTS, isMine,
+                    index).castShape(INTS, 0);
+            // 1 for a probability above 1.0. Probabilities are not negative, and the bits of
+            // non-negative doubles order like the doubles, so that is the sign of
+            // ONE_BITS - bits.
+            IntVector probless = (IntVector) DoubleVector.fromArray(DOUBLES_OF_INTS, mineProb,
+                    index).reinterpretAsLongs().neg().add(ONE_BITS)
+                    .lanewise(VectorOperators.LSHR, 63).castShape(INTS, 0);
+            counts = counts.add(covered.and(probless).and(marked.not()));
+        }
+        return counts.reduceLanes(VectorOperators.ADD) +
+                scalar.countProbless(snapshot, isMine, mineProb, index, to);
+    }
+
+    @Override
+    public String describe() {
+        return "vector (" + BYTES.vectorBitSize() + " bits" +
+                (WIDE_DOUBLES ? "" : ", scalar probability count") + ")";
+    }
+}